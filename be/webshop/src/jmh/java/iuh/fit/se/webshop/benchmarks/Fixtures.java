@@ -0,0 +1,108 @@
+package iuh.fit.se.webshop.benchmarks;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import iuh.fit.se.webshop.config.JwtConfig;
+import iuh.fit.se.webshop.models.*;
+import iuh.fit.se.webshop.resources.OrderResource;
+import iuh.fit.se.webshop.security.JwtService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/** Shared test data for the benchmarks; sizes roughly match a busy shop page or order history. */
+final class Fixtures {
+
+    static final String SECRET = "benchmarkSecretKeyForJwtSigningThatIsLongEnough1234567890";
+    private static final SecretKey KEY = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+
+    private Fixtures() {
+    }
+
+    static JwtService jwtService(long maxCachedTokens) {
+        JwtConfig config = new JwtConfig();
+        ReflectionTestUtils.setField(config, "secret", SECRET);
+        ReflectionTestUtils.setField(config, "expiration", 86_400_000L);
+        return new JwtService(config, maxCachedTokens);
+    }
+
+    /**
+     * JwtService.extractAllClaims as it was before the verified-token cache: every call
+     * builds a new parser and checks the signature. Kept as the baseline for the JWT benchmarks.
+     */
+    static Claims parseClaimsPerCall(String token) {
+        return Jwts.parser()
+                .verifyWith(KEY)
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    static List<Product> products(int count) {
+        List<Category> categories = List.of(
+                new Category(1L, "Điện thoại", "Smartphones"),
+                new Category(2L, "Laptop", "Notebooks"),
+                new Category(3L, "Phụ kiện", "Accessories"));
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Product p = new Product();
+            p.setId((long) i);
+            p.setName("Sản phẩm " + i);
+            p.setPrice(1_000_000.0 + i * 1000);
+            p.setImage("/api/images/" + String.format("%032x", i) + "/detail");
+            p.setDescription("Mô tả ngắn cho sản phẩm số " + i + ", đủ dài để giống dữ liệu thật.");
+            p.setCategory(categories.get(i % categories.size()));
+            products.add(p);
+        }
+        return products;
+    }
+
+    static List<Order> orders(int count, int itemsPerOrder) {
+        List<Product> products = products(50);
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("customer");
+        user.setRole("USER");
+        List<Order> orders = new ArrayList<>(count);
+        long itemId = 1;
+        for (int i = 1; i <= count; i++) {
+            Order order = new Order();
+            order.setId((long) i);
+            order.setCode(String.format("%010d", i));
+            order.setUser(user);
+            order.setOrderDate(new Date());
+            order.setStatus("Pending");
+            order.setShippingAddress("12 Nguyễn Văn Bảo, Gò Vấp, TP.HCM");
+            double total = 0;
+            for (int j = 0; j < itemsPerOrder; j++) {
+                Product product = products.get((i + j) % products.size());
+                OrderItem item = new OrderItem(order, product, 1 + j, product.getPrice());
+                item.setId(itemId++);
+                order.getItems().add(item);
+                total += product.getPrice() * (1 + j);
+            }
+            order.setTotalAmount(total);
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    /** The same orders as the rows the order history queries return. */
+    static List<OrderResource.Row> orderRows(int count, int itemsPerOrder) {
+        List<OrderResource.Row> rows = new ArrayList<>(count * itemsPerOrder);
+        for (Order order : orders(count, itemsPerOrder)) {
+            for (OrderItem item : order.getItems()) {
+                Product product = item.getProduct();
+                rows.add(new OrderResource.Row(order.getId(), order.getCode(), order.getOrderDate(), order.getStatus(),
+                        order.getTotalAmount(), order.getShippingAddress(), item.getId(), item.getQuantity(),
+                        item.getUnitPrice(), product.getId(), product.getName(), product.getPrice(), product.getImage()));
+            }
+        }
+        return rows;
+    }
+}
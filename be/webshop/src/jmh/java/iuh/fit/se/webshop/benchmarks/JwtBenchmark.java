@@ -0,0 +1,53 @@
+package iuh.fit.se.webshop.benchmarks;
+
+import io.jsonwebtoken.Claims;
+import iuh.fit.se.webshop.security.JwtService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issue and verification. "baseline" is the old extractAllClaims, a new parser per
+ * call; "cold" has the verified-token cache disabled, so every call checks the signature
+ * with the shared parser; "warm" is the cache hit taken by repeat requests.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private JwtService cold;
+    private JwtService warm;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cold = Fixtures.jwtService(0);
+        warm = Fixtures.jwtService(10_000);
+        token = warm.generateToken("customer", "USER", 42L);
+        warm.parseClaims(token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return warm.generateToken("customer", "USER", 42L);
+    }
+
+    @Benchmark
+    public Claims parseClaimsBaseline() {
+        return Fixtures.parseClaimsPerCall(token);
+    }
+
+    @Benchmark
+    public Claims parseClaimsCold() {
+        return cold.parseClaims(token);
+    }
+
+    @Benchmark
+    public Claims parseClaimsWarm() {
+        return warm.parseClaims(token);
+    }
+}
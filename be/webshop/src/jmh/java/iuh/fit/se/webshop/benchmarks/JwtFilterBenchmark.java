@@ -0,0 +1,107 @@
+package iuh.fit.se.webshop.benchmarks;
+
+import io.jsonwebtoken.Claims;
+import iuh.fit.se.webshop.security.AuthenticatedUser;
+import iuh.fit.se.webshop.security.JwtAuthenticationFilter;
+import iuh.fit.se.webshop.security.JwtService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One authenticated request through the JWT filter. "baseline" is the filter as it was
+ * before the verified-token cache (one full parse per claim read); "cold" is the current
+ * filter with the cache disabled (one parse per request); "warm" is the current filter
+ * with the cache hit taken by repeat requests.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtFilterBenchmark {
+
+    /** The old doFilterInternal: username, role and user id each parsed and verified on their own. */
+    private static final class PerClaimParseFilter extends OncePerRequestFilter {
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                        FilterChain filterChain) throws ServletException, IOException {
+            String authHeader = request.getHeader("Authorization");
+            if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                try {
+                    String jwt = authHeader.substring(7);
+                    String username = Fixtures.parseClaimsPerCall(jwt).getSubject();
+                    String role = Fixtures.parseClaimsPerCall(jwt).get("role", String.class);
+                    Long userId = Fixtures.parseClaimsPerCall(jwt).get("userId", Long.class);
+                    if (username != null && userId != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                        var principal = new AuthenticatedUser(userId, username, role);
+                        var authorities = Collections.singleton(new SimpleGrantedAuthority("ROLE_" + role));
+                        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                                principal, null, authorities);
+                        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                        SecurityContextHolder.getContext().setAuthentication(authToken);
+                    }
+                } catch (RuntimeException e) {
+                    // Token invalid, continue without authentication
+                }
+            }
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    private OncePerRequestFilter baseline;
+    private JwtAuthenticationFilter cold;
+    private JwtAuthenticationFilter warm;
+    private String authorization;
+
+    @Setup
+    public void setUp() {
+        JwtService warmService = Fixtures.jwtService(10_000);
+        baseline = new PerClaimParseFilter();
+        cold = new JwtAuthenticationFilter(Fixtures.jwtService(0));
+        warm = new JwtAuthenticationFilter(warmService);
+        authorization = "Bearer " + warmService.generateToken("customer", "USER", 42L);
+    }
+
+    @Benchmark
+    public Object authenticatedRequestBaseline() throws Exception {
+        return authenticate(baseline);
+    }
+
+    @Benchmark
+    public Object authenticatedRequestCold() throws Exception {
+        return authenticate(cold);
+    }
+
+    @Benchmark
+    public Object authenticatedRequest() throws Exception {
+        return authenticate(warm);
+    }
+
+    private Object authenticate(OncePerRequestFilter filter) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/cart");
+        request.addHeader("Authorization", authorization);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filter.doFilter(request, response, new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
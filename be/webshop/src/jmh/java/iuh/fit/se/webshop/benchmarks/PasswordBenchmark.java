@@ -0,0 +1,56 @@
+package iuh.fit.se.webshop.benchmarks;
+
+import iuh.fit.se.webshop.utils.SecurityUtils;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BCrypt cost per call, through SecurityUtils (jBCrypt, default cost) and through the
+ * Spring encoder the API uses. Each call takes milliseconds, so few iterations are enough.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PasswordBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"10"})
+    public int strength;
+
+    private BCryptPasswordEncoder encoder;
+    private String jbcryptHash;
+    private String springHash;
+
+    @Setup
+    public void setUp() {
+        encoder = new BCryptPasswordEncoder(strength);
+        jbcryptHash = SecurityUtils.hashPassword(PASSWORD);
+        springHash = encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public String securityUtilsHash() {
+        return SecurityUtils.hashPassword(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean securityUtilsCheck() {
+        return SecurityUtils.checkPassword(PASSWORD, jbcryptHash);
+    }
+
+    @Benchmark
+    public String encoderEncode() {
+        return encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean encoderMatches() {
+        return encoder.matches(PASSWORD, springHash);
+    }
+}
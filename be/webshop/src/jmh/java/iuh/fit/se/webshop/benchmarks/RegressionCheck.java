@@ -0,0 +1,61 @@
+package iuh.fit.se.webshop.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON result with a baseline run and fails when any benchmark got slower
+ * than the allowed ratio. Usage: RegressionCheck baseline.json current.json [maxSlowdown]
+ * An empty or missing baseline path skips the check, so a first run just records results.
+ */
+public final class RegressionCheck {
+
+    private RegressionCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args[0].isBlank() || !new File(args[0]).isFile()) {
+            System.out.println("No JMH baseline given; skipping regression check");
+            return;
+        }
+        double maxSlowdown = args.length > 2 ? Double.parseDouble(args[2]) : 1.10;
+        Map<String, Double> baseline = scores(new File(args[0]));
+        Map<String, Double> current = scores(new File(args[1]));
+
+        int regressions = 0;
+        for (Map.Entry<String, Double> entry : current.entrySet()) {
+            Double before = baseline.get(entry.getKey());
+            if (before == null || before == 0) {
+                System.out.printf("  new   %-70s %12.3f%n", entry.getKey(), entry.getValue());
+                continue;
+            }
+            // All benchmarks here measure time per operation, so higher is slower
+            double ratio = entry.getValue() / before;
+            boolean regressed = ratio > maxSlowdown;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("  %-5s %-70s %12.3f -> %12.3f (%+.1f%%)%n",
+                    regressed ? "SLOW" : "ok", entry.getKey(), before, entry.getValue(), (ratio - 1) * 100);
+        }
+        if (regressions > 0) {
+            System.err.printf("%d benchmark(s) slower than %.0f%% of baseline%n", regressions, maxSlowdown * 100);
+            System.exit(1);
+        }
+    }
+
+    /** Benchmark name plus its params, mapped to the primary score. */
+    private static Map<String, Double> scores(File file) throws Exception {
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText());
+            run.path("params").fields().forEachRemaining(p -> key.append(' ').append(p.getKey()).append('=').append(p.getValue().asText()));
+            scores.put(key.toString(), run.path("primaryMetric").path("score").asDouble());
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,72 @@
+package iuh.fit.se.webshop.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.webshop.models.Order;
+import iuh.fit.se.webshop.models.Product;
+import iuh.fit.se.webshop.resources.OrderResource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response building for the catalog and order history: Jackson over the entity graphs, and
+ * the order history as served, i.e. projection rows assembled into OrderResource records.
+ * The jmh profile runs with the GC profiler, so gc.alloc.rate.norm gives bytes per request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"200"})
+    public int products;
+
+    @Param({"50"})
+    public int orders;
+
+    private ObjectMapper objectMapper;
+    private List<Product> productList;
+    private List<Order> orderList;
+    private List<OrderResource.Row> orderRows;
+    private List<OrderResource> orderResources;
+
+    @Setup
+    public void setUp() {
+        // Same defaults Spring Boot applies to the application's ObjectMapper
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        productList = Fixtures.products(products);
+        orderList = Fixtures.orders(orders, 3);
+        orderRows = Fixtures.orderRows(orders, 3);
+        orderResources = OrderResource.fromRows(orderRows);
+    }
+
+    @Benchmark
+    public byte[] productListJson() throws Exception {
+        return objectMapper.writeValueAsBytes(productList);
+    }
+
+    @Benchmark
+    public byte[] orderGraphJson() throws Exception {
+        return objectMapper.writeValueAsBytes(orderList);
+    }
+
+    @Benchmark
+    public List<OrderResource> orderRowAssembly() {
+        return OrderResource.fromRows(orderRows);
+    }
+
+    @Benchmark
+    public byte[] orderResourceJson() throws Exception {
+        return objectMapper.writeValueAsBytes(orderResources);
+    }
+
+    @Benchmark
+    public byte[] orderHistoryResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(OrderResource.fromRows(orderRows));
+    }
+}
@@ -0,0 +1,53 @@
+package iuh.fit.se.webshop.loadtest;
+
+import java.util.*;
+
+/**
+ * Latency samples for one virtual user, per endpoint label. Each user records into its own
+ * instance without locking; the instances are merged once the run is over.
+ */
+final class LatencyRecorder {
+
+    private final Map<String, Samples> byEndpoint = new HashMap<>();
+
+    static final class Samples {
+        long[] nanos = new long[1024];
+        int size;
+        long errors;
+
+        void add(long value) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = value;
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.nanos[i]);
+            }
+            errors += other.errors;
+        }
+    }
+
+    void record(String endpoint, long nanos, boolean ok) {
+        Samples samples = byEndpoint.computeIfAbsent(endpoint, k -> new Samples());
+        samples.add(nanos);
+        if (!ok) {
+            samples.errors++;
+        }
+    }
+
+    void clear() {
+        byEndpoint.clear();
+    }
+
+    static Map<String, Samples> merge(Collection<LatencyRecorder> recorders) {
+        Map<String, Samples> merged = new TreeMap<>();
+        for (LatencyRecorder recorder : recorders) {
+            recorder.byEndpoint.forEach((endpoint, samples) ->
+                    merged.computeIfAbsent(endpoint, k -> new Samples()).addAll(samples));
+        }
+        return merged;
+    }
+}
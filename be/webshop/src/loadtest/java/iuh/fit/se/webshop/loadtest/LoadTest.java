@@ -0,0 +1,170 @@
+package iuh.fit.se.webshop.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import iuh.fit.se.webshop.WebshopApplication;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Boots the application with the "loadtest" profile (embedded H2, seeded data), runs the
+ * virtual users against it over real HTTP, then prints and saves throughput and latency
+ * percentiles per endpoint, along with the SQL statements each route ran per request.
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(WebshopApplication.class)
+                .profiles("loadtest")
+                .run(args);
+        int exitCode = 0;
+        try {
+            LoadTestSettings settings = context.getBean(LoadTestSettings.class);
+            String port = context.getEnvironment().getProperty("local.server.port");
+            String contextPath = context.getEnvironment().getProperty("server.servlet.context-path", "");
+            exitCode = run(settings, "http://localhost:" + port + contextPath, context.getBean(ObjectMapper.class),
+                    context.getBean(MeterRegistry.class));
+        } finally {
+            context.close();
+        }
+        System.exit(exitCode);
+    }
+
+    private static int run(LoadTestSettings settings, String baseUrl, ObjectMapper json, MeterRegistry meters) throws Exception {
+        int customers = Math.min(settings.users(), settings.customers());
+        int admins = settings.adminUsers();
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        long now = System.nanoTime();
+        long measureFrom = now + TimeUnit.SECONDS.toNanos(settings.warmupSeconds());
+        long deadline = measureFrom + TimeUnit.SECONDS.toNanos(settings.durationSeconds());
+
+        List<VirtualUser> users = new ArrayList<>();
+        for (int i = 1; i <= customers; i++) {
+            users.add(new VirtualUser(http, json, baseUrl, "user" + i, false, settings, measureFrom, deadline, i));
+        }
+        for (int i = 0; i < admins; i++) {
+            users.add(new VirtualUser(http, json, baseUrl, "admin", true, settings, measureFrom, deadline, -1 - i));
+        }
+
+        System.out.printf("Load test: %d customers + %d admins, %ds warm-up, %ds measured, against %s%n",
+                customers, admins, settings.warmupSeconds(), settings.durationSeconds(), baseUrl);
+        ExecutorService pool = Executors.newFixedThreadPool(users.size());
+        users.forEach(pool::execute);
+        pool.shutdown();
+        pool.awaitTermination(settings.warmupSeconds() + settings.durationSeconds() + 120L, TimeUnit.SECONDS);
+
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        users.forEach(u -> recorders.add(u.recorder()));
+        Map<String, Object> report = report(LatencyRecorder.merge(recorders), settings);
+        report.put("queries", queries(meters));
+        print(report);
+
+        File out = new File(settings.report());
+        if (out.getParentFile() != null) {
+            out.getParentFile().mkdirs();
+        }
+        json.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(out, report);
+        System.out.println("Report written to " + out.getAbsolutePath());
+        return 0;
+    }
+
+    private static Map<String, Object> report(Map<String, LatencyRecorder.Samples> merged, LoadTestSettings settings) {
+        double seconds = settings.durationSeconds();
+        List<Map<String, Object>> endpoints = new ArrayList<>();
+        LatencyRecorder.Samples all = new LatencyRecorder.Samples();
+        merged.forEach((endpoint, samples) -> {
+            endpoints.add(row(endpoint, samples, seconds));
+            all.addAll(samples);
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", settings.users());
+        result.put("adminUsers", settings.adminUsers());
+        result.put("durationSeconds", settings.durationSeconds());
+        result.put("seed", Map.of("products", settings.products(), "customers", settings.customers(), "orders", settings.orders()));
+        result.put("total", row("TOTAL", all, seconds));
+        result.put("endpoints", endpoints);
+        return result;
+    }
+
+    private static Map<String, Object> row(String endpoint, LatencyRecorder.Samples samples, double seconds) {
+        long[] sorted = Arrays.copyOf(samples.nanos, samples.size);
+        Arrays.sort(sorted);
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("endpoint", endpoint);
+        row.put("requests", samples.size);
+        row.put("errors", samples.errors);
+        row.put("throughput", samples.size / seconds);
+        row.put("p50Ms", percentile(sorted, 0.50));
+        row.put("p95Ms", percentile(sorted, 0.95));
+        row.put("p99Ms", percentile(sorted, 0.99));
+        row.put("maxMs", sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1e6);
+        return row;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    /** Statements per request by route over the whole run (warm-up included), from the QueryBudget meters. */
+    private static List<Map<String, Object>> queries(MeterRegistry meters) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (DistributionSummary summary : meters.find("http.server.requests.queries").summaries()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("route", summary.getId().getTag("method") + " " + summary.getId().getTag("uri"));
+            row.put("requests", summary.count());
+            row.put("meanStatements", summary.mean());
+            row.put("maxStatements", summary.max());
+            rows.add(row);
+        }
+        rows.sort(Comparator.comparing(row -> (String) row.get("route")));
+        return rows;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void print(Map<String, Object> report) {
+        String format = "%-32s %9s %7s %9s %9s %9s %9s %9s%n";
+        System.out.println();
+        System.out.printf(format, "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        List<Map<String, Object>> rows = new ArrayList<>((List<Map<String, Object>>) report.get("endpoints"));
+        rows.add((Map<String, Object>) report.get("total"));
+        for (Map<String, Object> row : rows) {
+            System.out.printf(format, row.get("endpoint"), row.get("requests"), row.get("errors"),
+                    String.format("%.1f", (Double) row.get("throughput")),
+                    String.format("%.2f", (Double) row.get("p50Ms")),
+                    String.format("%.2f", (Double) row.get("p95Ms")),
+                    String.format("%.2f", (Double) row.get("p99Ms")),
+                    String.format("%.2f", (Double) row.get("maxMs")));
+        }
+        System.out.println();
+        String queryFormat = "%-32s %9s %9s %9s%n";
+        System.out.printf(queryFormat, "route", "requests", "sql/req", "sql max");
+        for (Map<String, Object> row : (List<Map<String, Object>>) report.get("queries")) {
+            System.out.printf(queryFormat, row.get("route"), row.get("requests"),
+                    String.format("%.1f", (Double) row.get("meanStatements")),
+                    String.format("%.0f", (Double) row.get("maxStatements")));
+        }
+        System.out.println();
+    }
+}
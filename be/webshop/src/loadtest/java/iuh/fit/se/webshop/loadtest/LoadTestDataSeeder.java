@@ -0,0 +1,94 @@
+package iuh.fit.se.webshop.loadtest;
+
+import iuh.fit.se.webshop.config.IdSequenceConfig;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills the freshly created H2 schema with a synthetic shop before the application starts
+ * serving: categories, products with stock, one admin, customers and an order history.
+ * Everything is generated in SQL from SYSTEM_RANGE, so even large seeds take seconds.
+ *
+ * Runs before the inventory load and the ApplicationReadyEvent listeners (rollup backfill,
+ * search index), so they pick the data up exactly as they would on a real database.
+ */
+@Component
+@Profile("loadtest")
+@DependsOn("entityManagerFactory")
+public class LoadTestDataSeeder {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTestDataSeeder.class);
+    private static final String STATUSES = "ARRAY['Pending', 'Confirmed', 'Shipping', 'Completed', 'Paid', 'Cancelled']";
+    private static final String NOUNS = "ARRAY['Điện thoại', 'Laptop', 'Tai nghe', 'Đồng hồ', 'Máy tính bảng', 'Loa', 'Chuột', 'Bàn phím']";
+    private static final String BRANDS = "ARRAY['Apple', 'Samsung', 'Xiaomi', 'Sony', 'Asus', 'Lenovo', 'Logitech', 'JBL', 'Oppo', 'Dell']";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+    private final IdSequenceConfig idSequenceConfig;
+    private final LoadTestSettings settings;
+
+    public LoadTestDataSeeder(JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder,
+                              IdSequenceConfig idSequenceConfig, LoadTestSettings settings) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+        this.idSequenceConfig = idSequenceConfig;
+        this.settings = settings;
+    }
+
+    @PostConstruct
+    public void seed() {
+        long start = System.currentTimeMillis();
+        int categories = settings.categories();
+        int products = settings.products();
+        int customers = settings.customers();
+        int orders = settings.orders();
+        int itemsPerOrder = settings.itemsPerOrder();
+
+        jdbcTemplate.update("INSERT INTO categories (name, description) "
+                + "SELECT 'Danh mục ' || X, 'Synthetic category ' || X FROM SYSTEM_RANGE(1, " + categories + ") r(x)");
+
+        jdbcTemplate.update("INSERT INTO products (name, price, image, description, category_id) "
+                + "SELECT " + BRANDS + "[MOD(X, 10) + 1] || ' ' || " + NOUNS + "[MOD(X, 8) + 1] || ' ' || X, "
+                + "ROUND(100000 + MOD(X * 7919, 49900) * 1000, 0), "
+                + "'', 'Sản phẩm thử tải số ' || X, MOD(X, " + categories + ") + 1 "
+                + "FROM SYSTEM_RANGE(1, " + products + ") r(x)");
+
+        jdbcTemplate.update("INSERT INTO inventory (product_id, available, flushedAt) "
+                + "SELECT id, ?, CURRENT_TIMESTAMP FROM products", settings.stock());
+
+        // Hash once; BCrypt per seeded user would dominate startup
+        String hash = passwordEncoder.encode(settings.password());
+        jdbcTemplate.update("INSERT INTO users (username, password, email, role, fullName) VALUES "
+                + "('admin', ?, 'admin@loadtest.local', 'ADMIN', 'Load Test Admin')", hash);
+        jdbcTemplate.update("INSERT INTO users (username, password, email, role, fullName, address) "
+                + "SELECT 'user' || X, ?, 'user' || X || '@loadtest.local', 'USER', 'Khách hàng ' || X, "
+                + "X || ' Nguyễn Văn Bảo, Gò Vấp' FROM SYSTEM_RANGE(1, " + customers + ") r(x)", hash);
+
+        if (orders > 0 && customers > 0) {
+            // Customer ids start at 2 (admin is 1); orders spread over roughly the last 180 days
+            jdbcTemplate.update("INSERT INTO orders (id, user_id, orderDate, code, status, totalAmount, shippingAddress) "
+                    + "SELECT X, MOD(X, " + customers + ") + 2, "
+                    + "DATEADD(MINUTE, -MOD(X * 104729, 259200), CURRENT_TIMESTAMP), "
+                    + "'S' || LPAD(CAST(X AS VARCHAR), 9, '0'), " + STATUSES + "[MOD(X, 6) + 1], 0, "
+                    + "X || ' Nguyễn Văn Bảo, Gò Vấp' FROM SYSTEM_RANGE(1, " + orders + ") r(x)");
+            jdbcTemplate.update("INSERT INTO order_items (id, order_id, product_id, quantity, unitPrice) "
+                    + "SELECT X, (X - 1) / " + itemsPerOrder + " + 1, MOD(X * 31, " + products + ") + 1, MOD(X, 3) + 1, "
+                    + "(SELECT p.price FROM products p WHERE p.id = MOD(X * 31, " + products + ") + 1) "
+                    + "FROM SYSTEM_RANGE(1, " + (long) orders * itemsPerOrder + ") r(x)");
+            jdbcTemplate.update("UPDATE orders o SET totalAmount = "
+                    + "(SELECT SUM(i.quantity * i.unitPrice) FROM order_items i WHERE i.order_id = o.id)");
+        }
+
+        // Seeded rows used explicit ids, so move the pooled sequences past them
+        idSequenceConfig.alignSequences();
+
+        log.info("Seeded {} categories, {} products, {} customers, {} orders in {} ms",
+                categories, products, customers, orders, System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,24 @@
+package iuh.fit.se.webshop.loadtest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/** loadtest.* settings, from application-loadtest.properties or -D overrides. */
+@Component
+@Profile("loadtest")
+public record LoadTestSettings(
+        @Value("${loadtest.seed.categories}") int categories,
+        @Value("${loadtest.seed.products}") int products,
+        @Value("${loadtest.seed.customers}") int customers,
+        @Value("${loadtest.seed.orders}") int orders,
+        @Value("${loadtest.seed.items-per-order}") int itemsPerOrder,
+        @Value("${loadtest.seed.stock}") int stock,
+        @Value("${loadtest.password}") String password,
+        @Value("${loadtest.users}") int users,
+        @Value("${loadtest.admin-users}") int adminUsers,
+        @Value("${loadtest.duration-seconds}") int durationSeconds,
+        @Value("${loadtest.warmup-seconds}") int warmupSeconds,
+        @Value("${loadtest.think-time-ms}") int thinkTimeMillis,
+        @Value("${loadtest.report}") String report) {
+}
@@ -0,0 +1,177 @@
+package iuh.fit.se.webshop.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * One simulated shopper (or admin) running its scenario mix in a loop until the deadline.
+ * Requests started before the warm-up ends are not recorded.
+ */
+final class VirtualUser implements Runnable {
+
+    // Customer mix, in percent: mostly browsing, a few carts, fewer checkouts
+    private static final int[] WEIGHTS = {25, 15, 15, 15, 5, 12, 5, 5, 3};
+    private static final String[] QUERIES = {"iphone", "samsung", "laptop", "tai nghe", "dong ho", "loa", "sony", "ban ph", "xiaomi 1"};
+
+    private final HttpClient http;
+    private final ObjectMapper json;
+    private final String baseUrl;
+    private final String username;
+    private final String password;
+    private final boolean admin;
+    private final LoadTestSettings settings;
+    private final long measureFrom;
+    private final long deadline;
+    private final LatencyRecorder recorder = new LatencyRecorder();
+    private final SplittableRandom random;
+
+    private String token;
+    private int cartLines;
+
+    VirtualUser(HttpClient http, ObjectMapper json, String baseUrl, String username, boolean admin,
+                LoadTestSettings settings, long measureFrom, long deadline, long seed) {
+        this.http = http;
+        this.json = json;
+        this.baseUrl = baseUrl;
+        this.username = username;
+        this.password = settings.password();
+        this.admin = admin;
+        this.settings = settings;
+        this.measureFrom = measureFrom;
+        this.deadline = deadline;
+        this.random = new SplittableRandom(seed);
+    }
+
+    LatencyRecorder recorder() {
+        return recorder;
+    }
+
+    @Override
+    public void run() {
+        try {
+            login();
+            while (System.nanoTime() < deadline) {
+                if (admin) {
+                    adminIteration();
+                } else {
+                    customerIteration();
+                }
+                if (settings.thinkTimeMillis() > 0) {
+                    Thread.sleep(settings.thinkTimeMillis());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println(username + " stopped: " + e);
+        }
+    }
+
+    private void login() throws Exception {
+        HttpResponse<String> response = send("POST /api/auth/login", post("/api/auth/login",
+                "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}", null));
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Login failed for " + username + ": " + response.statusCode());
+        }
+        token = json.readTree(response.body()).path("token").asText();
+    }
+
+    private void customerIteration() throws Exception {
+        int pick = random.nextInt(100);
+        int scenario = 0;
+        while (pick >= WEIGHTS[scenario]) {
+            pick -= WEIGHTS[scenario];
+            scenario++;
+        }
+        switch (scenario) {
+            case 0 -> send("GET /api/products", get("/api/products"));
+            case 1 -> send("GET /api/products?page", get("/api/products?limit=24&sort=price_asc&categoryId="
+                    + (1 + random.nextInt(settings.categories()))));
+            case 2 -> send("GET /api/products/{id}", get("/api/products/" + productId()));
+            case 3 -> send("GET /api/products/search", get("/api/products/search?q="
+                    + QUERIES[random.nextInt(QUERIES.length)].replace(" ", "+")));
+            case 4 -> send("GET /api/categories", get("/api/categories"));
+            case 5 -> {
+                HttpResponse<String> r = send("POST /api/cart", post("/api/cart",
+                        "{\"productId\":" + productId() + ",\"quantity\":1}", null));
+                if (r.statusCode() == 200) {
+                    cartLines++;
+                }
+            }
+            case 6 -> send("GET /api/cart", get("/api/cart"));
+            case 7 -> {
+                if (cartLines == 0) {
+                    send("POST /api/cart", post("/api/cart", "{\"productId\":" + productId() + ",\"quantity\":1}", null));
+                }
+                HttpResponse<String> r = send("POST /api/orders", post("/api/orders",
+                        "{\"shippingAddress\":\"12 Nguyễn Văn Bảo, Gò Vấp\"}", UUID.randomUUID().toString()));
+                if (r.statusCode() == 200) {
+                    cartLines = 0;
+                }
+            }
+            default -> send("GET /api/orders", get("/api/orders"));
+        }
+    }
+
+    private void adminIteration() throws Exception {
+        int pick = random.nextInt(10);
+        if (pick < 4) {
+            LocalDate today = LocalDate.now();
+            send("GET /api/orders (admin, 7d)", get("/api/orders?startDate=" + today.minusDays(7) + "&endDate=" + today));
+        } else if (pick < 6) {
+            send("GET /api/orders (admin, all)", get("/api/orders"));
+        } else {
+            send("GET /api/stats", get("/api/stats?range=month"));
+        }
+    }
+
+    private long productId() {
+        // Skewed towards low ids, so a small set of products is popular like in a real shop
+        double u = random.nextDouble();
+        return 1 + (long) (settings.products() * u * u);
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return request(path).GET();
+    }
+
+    private HttpRequest.Builder post(String path, String body, String idempotencyKey) {
+        HttpRequest.Builder builder = request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (idempotencyKey != null) {
+            builder.header("Idempotency-Key", idempotencyKey);
+        }
+        return builder;
+    }
+
+    private HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Accept-Encoding", "gzip");
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private HttpResponse<String> send(String endpoint, HttpRequest.Builder request) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        long end = System.nanoTime();
+        // Count everything started inside the window, so a slow endpoint is reported rather than dropped
+        if (start >= measureFrom && start < deadline) {
+            recorder.record(endpoint, end - start, response.statusCode() < 400);
+        }
+        return response;
+    }
+}
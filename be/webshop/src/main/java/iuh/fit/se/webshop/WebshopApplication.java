@@ -3,9 +3,11 @@ package iuh.fit.se.webshop;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableJpaRepositories(basePackages = "iuh.fit.se.webshop.repositories")
+@EnableScheduling
 public class WebshopApplication {
     public static void main(String[] args) {
         SpringApplication.run(WebshopApplication.class, args);
@@ -0,0 +1,36 @@
+package iuh.fit.se.webshop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * The primary pool from spring.datasource.* (and spring.datasource.hikari.*, as Boot would
+     * bind it); wrapped in a read/write router only when replicas are configured.
+     */
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment env, ReplicaPool replicas,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(env).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName("primary");
+        }
+        if (replicas.isEmpty()) {
+            return primary;
+        }
+        meterRegistry.ifAvailable(primary::setMetricRegistry);
+        return new RoutingDataSource(primary, replicas);
+    }
+}
@@ -0,0 +1,49 @@
+package iuh.fit.se.webshop.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+
+/**
+ * Order, OrderItem and CartItem ids come from pooled sequences (allocationSize 50) so
+ * Hibernate can batch their inserts. Tables created under the old AUTO_INCREMENT mapping
+ * already hold ids, so on startup each sequence is moved past the table's current max id
+ * before anything is inserted.
+ */
+@Configuration
+@DependsOn("entityManagerFactory")
+public class IdSequenceConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(IdSequenceConfig.class);
+    private static final int ALLOCATION_SIZE = 50;
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "orders_seq", "orders",
+            "order_items_seq", "order_items",
+            "cart_items_seq", "cart_items"
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdSequenceConfig(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void alignSequences() {
+        SEQUENCES.forEach((sequence, table) -> {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+            Long next = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + sequence, Long.class);
+            // The pooled optimizer hands out (value - allocationSize, value], so leave a full block of headroom
+            if (maxId != null && next != null && next - ALLOCATION_SIZE <= maxId) {
+                long restart = maxId + ALLOCATION_SIZE + 1;
+                jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + restart);
+                log.info("Sequence {} moved to {} (max {}.id = {})", sequence, restart, table, maxId);
+            }
+        });
+    }
+}
@@ -0,0 +1,17 @@
+package iuh.fit.se.webshop.config;
+
+import iuh.fit.se.webshop.services.QueryBudget;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    /** Puts the per-request statement counter in front of every SQL statement Hibernate prepares. */
+    @Bean
+    public HibernatePropertiesCustomizer queryBudgetInspector(QueryBudget queryBudget) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, queryBudget);
+    }
+}
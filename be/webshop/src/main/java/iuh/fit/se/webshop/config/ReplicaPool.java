@@ -0,0 +1,186 @@
+package iuh.fit.se.webshop.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.webshop.security.AuthenticatedUser;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection pools for the read replicas listed in datasource.replicas.urls (comma separated;
+ * empty means no replicas and no routing). Replicas are health-checked in the background and
+ * handed out round-robin. Reads stay on the primary when none is healthy, when the current
+ * user checked out moments ago (a lagging replica might not have their order yet), and for a
+ * few seconds after a catalog write, so the caches reload from data that includes it.
+ */
+@Component
+public class ReplicaPool {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaPool.class);
+
+    public static final class Replica {
+        private final HikariDataSource dataSource;
+        private final LongAdder connections = new LongAdder();
+        private volatile boolean healthy;
+
+        Replica(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        public HikariDataSource dataSource() {
+            return dataSource;
+        }
+    }
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final Cache<Long, Boolean> pinnedUsers;
+    private final long readYourWritesNanos;
+    private volatile long allPinnedUntil = System.nanoTime();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public ReplicaPool(@Value("${datasource.replicas.urls:}") String urls,
+                       @Value("${datasource.replicas.username:${spring.datasource.username:}}") String username,
+                       @Value("${datasource.replicas.password:${spring.datasource.password:}}") String password,
+                       @Value("${datasource.replicas.maximum-pool-size:10}") int maximumPoolSize,
+                       @Value("${datasource.replicas.connection-timeout-ms:2000}") long connectionTimeoutMs,
+                       @Value("${datasource.replicas.read-your-writes-seconds:5}") long readYourWritesSeconds,
+                       ObjectProvider<MeterRegistry> meterRegistry) {
+        int index = 0;
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource ds = new HikariDataSource();
+            ds.setPoolName("replica-" + ++index);
+            ds.setJdbcUrl(url.trim());
+            ds.setUsername(username);
+            ds.setPassword(password);
+            ds.setMaximumPoolSize(maximumPoolSize);
+            ds.setConnectionTimeout(connectionTimeoutMs);
+            ds.setReadOnly(true);
+            // A replica that is down at startup must not stop the application; the health check keeps trying
+            ds.setInitializationFailTimeout(-1);
+            meterRegistry.ifAvailable(ds::setMetricRegistry);
+            replicas.add(new Replica(ds));
+        }
+        this.readYourWritesNanos = Duration.ofSeconds(readYourWritesSeconds).toNanos();
+        this.pinnedUsers = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(readYourWritesSeconds))
+                .maximumSize(100_000)
+                .build();
+    }
+
+    public boolean isEmpty() {
+        return replicas.isEmpty();
+    }
+
+    /** A healthy replica for the current read, or null when it has to go to the primary. */
+    public Replica choose() {
+        if (isPinned()) {
+            return null;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                replica.connections.increment();
+                return replica;
+            }
+        }
+        fallbacks.increment();
+        return null;
+    }
+
+    /** Takes a replica out of rotation until the next health check finds it working again. */
+    public void markDown(Replica replica, SQLException cause) {
+        if (replica.healthy) {
+            log.warn("Replica {} is unavailable, reading from the primary: {}", replica.dataSource.getPoolName(), cause.getMessage());
+        }
+        replica.healthy = false;
+        fallbacks.increment();
+    }
+
+    /** Sends this user's reads to the primary for a few seconds, e.g. right after their checkout. */
+    public void pinToPrimary(Long userId) {
+        if (!replicas.isEmpty() && userId != null) {
+            pinnedUsers.put(userId, Boolean.TRUE);
+        }
+    }
+
+    /** Sends every read to the primary for a few seconds, e.g. while caches reload after a catalog write. */
+    public void pinAllToPrimary() {
+        allPinnedUntil = System.nanoTime() + readYourWritesNanos;
+    }
+
+    private boolean isPinned() {
+        if (System.nanoTime() - allPinnedUntil < 0) {
+            return true;
+        }
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth != null && auth.getPrincipal() instanceof AuthenticatedUser user
+                && pinnedUsers.getIfPresent(user.id()) != null;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replicas.health-check-ms:5000}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean ok;
+            try (Connection con = replica.dataSource.getConnection()) {
+                ok = con.isValid(2);
+            } catch (SQLException e) {
+                ok = false;
+            }
+            if (ok != replica.healthy) {
+                log.info("Replica {} is {}", replica.dataSource.getPoolName(), ok ? "healthy" : "down");
+            }
+            replica.healthy = ok;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        List<Map<String, Object>> pools = new ArrayList<>();
+        for (Replica replica : replicas) {
+            Map<String, Object> pool = new LinkedHashMap<>();
+            pool.put("name", replica.dataSource.getPoolName());
+            pool.put("url", replica.dataSource.getJdbcUrl());
+            pool.put("healthy", replica.healthy);
+            pool.put("connectionsHandedOut", replica.connections.sum());
+            HikariPoolMXBean mx = replica.dataSource.getHikariPoolMXBean();
+            if (mx != null) {
+                pool.put("active", mx.getActiveConnections());
+                pool.put("idle", mx.getIdleConnections());
+                pool.put("waiting", mx.getThreadsAwaitingConnection());
+            }
+            pools.add(pool);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("replicas", pools);
+        result.put("primaryFallbacks", fallbacks.sum());
+        result.put("pinnedUsers", pinnedUsers.estimatedSize());
+        return result;
+    }
+
+    @PreDestroy
+    public void close() {
+        replicas.forEach(replica -> replica.dataSource.close());
+    }
+}
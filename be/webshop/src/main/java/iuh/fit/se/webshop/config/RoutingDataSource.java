@@ -0,0 +1,60 @@
+package iuh.fit.se.webshop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Sends connections for read-only transactions to a replica and everything else to the
+ * primary. Connections are fetched lazily, on the first statement, because the read-only
+ * flag of a transaction is only known after the transaction manager has begun it.
+ */
+public class RoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private final HikariDataSource primary;
+
+    public RoutingDataSource(HikariDataSource primary, ReplicaPool replicas) {
+        super(new Router(primary, replicas));
+        this.primary = primary;
+    }
+
+    @Override
+    public void close() {
+        primary.close();
+    }
+
+    private static final class Router extends AbstractDataSource {
+        private final HikariDataSource primary;
+        private final ReplicaPool replicas;
+
+        Router(HikariDataSource primary, ReplicaPool replicas) {
+            this.primary = primary;
+            this.replicas = replicas;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                ReplicaPool.Replica replica = replicas.choose();
+                if (replica != null) {
+                    try {
+                        return replica.dataSource().getConnection();
+                    } catch (SQLException e) {
+                        replicas.markDown(replica, e);
+                    }
+                }
+            }
+            return primary.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return primary.getConnection(username, password);
+        }
+    }
+}
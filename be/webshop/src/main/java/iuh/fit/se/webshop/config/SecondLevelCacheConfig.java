@@ -0,0 +1,82 @@
+package iuh.fit.se.webshop.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate second-level and query cache regions, held in Caffeine behind the JCache API.
+ * Every region is created here up front with its own size and TTL (l2-cache.{region}.max-size
+ * and .ttl-seconds, 0 = no expiry); Hibernate is told to fail rather than create a region
+ * nobody sized.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    public static final String CATEGORIES = "categories";
+    public static final String PRODUCTS = "products";
+    public static final String USERS = "users";
+    public static final String CATEGORY_QUERIES = "category-queries";
+    public static final String PRODUCT_QUERIES = "product-queries";
+    // Hibernate's own regions: results of cacheable queries without a region, and per-table
+    // last-write times that decide whether a cached query result is still valid
+    public static final String DEFAULT_QUERIES = "default-query-results-region";
+    public static final String UPDATE_TIMESTAMPS = "default-update-timestamps-region";
+
+    /** Region name to {max entries, TTL seconds} used when no property overrides them. */
+    public static final Map<String, long[]> REGIONS = new LinkedHashMap<>();
+
+    static {
+        REGIONS.put(CATEGORIES, new long[]{1_000, 3600});
+        REGIONS.put(PRODUCTS, new long[]{20_000, 600});
+        REGIONS.put(USERS, new long[]{10_000, 300});
+        REGIONS.put(CATEGORY_QUERIES, new long[]{10, 3600});
+        REGIONS.put(PRODUCT_QUERIES, new long[]{2_000, 300});
+        REGIONS.put(DEFAULT_QUERIES, new long[]{1_000, 300});
+        // Must outlive every query result it guards, so it never expires
+        REGIONS.put(UPDATE_TIMESTAMPS, new long[]{10_000, 0});
+    }
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(Environment env) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+        REGIONS.forEach((region, defaults) -> {
+            long maxSize = env.getProperty("l2-cache." + region + ".max-size", Long.class, defaults[0]);
+            long ttlSeconds = env.getProperty("l2-cache." + region + ".ttl-seconds", Long.class, defaults[1]);
+            CaffeineConfiguration<Object, Object> config = new CaffeineConfiguration<>();
+            // Hibernate hands out its own immutable cache entries, so copying them on every read is wasted work
+            config.setStoreByValue(false);
+            config.setMaximumSize(OptionalLong.of(maxSize));
+            if (ttlSeconds > 0) {
+                config.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+            }
+            if (cacheManager.getCache(region) != null) {
+                cacheManager.destroyCache(region);
+            }
+            cacheManager.createCache(region, config);
+        });
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCache(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put("hibernate.cache.region.factory_class", ConfigSettings.SIMPLE_FACTORY_NAME);
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+}
@@ -0,0 +1,71 @@
+package iuh.fit.se.webshop.controllers;
+
+import iuh.fit.se.webshop.config.ReplicaPool;
+import iuh.fit.se.webshop.services.CatalogCache;
+import iuh.fit.se.webshop.services.OrderEventHub;
+import iuh.fit.se.webshop.services.PasswordHashingService;
+import iuh.fit.se.webshop.services.SecondLevelCacheStats;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@Tag(name = "Admin", description = "Operational APIs")
+public class AdminController {
+    
+    private final CatalogCache catalogCache;
+    private final PasswordHashingService passwordHashing;
+    private final SecondLevelCacheStats secondLevelCacheStats;
+    private final ReplicaPool replicaPool;
+    private final OrderEventHub orderEventHub;
+    
+    public AdminController(CatalogCache catalogCache, PasswordHashingService passwordHashing,
+                           SecondLevelCacheStats secondLevelCacheStats, ReplicaPool replicaPool,
+                           OrderEventHub orderEventHub) {
+        this.catalogCache = catalogCache;
+        this.passwordHashing = passwordHashing;
+        this.secondLevelCacheStats = secondLevelCacheStats;
+        this.replicaPool = replicaPool;
+        this.orderEventHub = orderEventHub;
+    }
+    
+    @GetMapping("/cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Catalog cache statistics (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
+    public Map<String, Object> cacheStats() {
+        return catalogCache.stats();
+    }
+    
+    @GetMapping("/hashing")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Password hashing pool statistics (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
+    public Map<String, Object> hashingStats() {
+        return passwordHashing.stats();
+    }
+    
+    @GetMapping("/l2-cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Hibernate second-level and query cache statistics per region (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
+    public Map<String, Object> secondLevelCacheStats() {
+        return secondLevelCacheStats.stats();
+    }
+    
+    @GetMapping("/replicas")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Read replica health and routing statistics (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
+    public Map<String, Object> replicaStats() {
+        return replicaPool.stats();
+    }
+    
+    @GetMapping("/order-events")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Order event stream subscribers and delivery statistics (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
+    public Map<String, Object> orderEventStats() {
+        return orderEventHub.stats();
+    }
+}
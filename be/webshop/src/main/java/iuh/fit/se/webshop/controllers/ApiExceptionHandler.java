@@ -0,0 +1,52 @@
+package iuh.fit.se.webshop.controllers;
+
+import iuh.fit.se.webshop.services.ChatService;
+import iuh.fit.se.webshop.services.IdempotencyService;
+import iuh.fit.se.webshop.services.OrderEventHub;
+import iuh.fit.se.webshop.services.PasswordHashingService;
+import iuh.fit.se.webshop.services.QueryBudget;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+@RestControllerAdvice
+public class ApiExceptionHandler {
+    
+    private final IdempotencyService idempotencyService;
+    
+    public ApiExceptionHandler(IdempotencyService idempotencyService) {
+        this.idempotencyService = idempotencyService;
+    }
+    
+    @ExceptionHandler(PasswordHashingService.OverloadedException.class)
+    public ResponseEntity<?> hashingOverloaded(PasswordHashingService.OverloadedException e) {
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Map.of("error", "Server is busy, please try again shortly"));
+    }
+    
+    @ExceptionHandler(QueryBudget.ExceededException.class)
+    public ResponseEntity<?> queryBudgetExceeded(QueryBudget.ExceededException e) {
+        return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+    }
+    
+    @ExceptionHandler(IdempotencyService.KeyTakenException.class)
+    public ResponseEntity<?> idempotencyKeyTaken(IdempotencyService.KeyTakenException e) {
+        // This attempt was rolled back; answer with the response the other node stored
+        ResponseEntity<?> previous = idempotencyService.replay(e.getScopedKey());
+        if (previous != null) {
+            return previous;
+        }
+        return ResponseEntity.status(409).body(Map.of("error", "A request with this Idempotency-Key is in progress"));
+    }
+    
+    @ExceptionHandler({ChatService.CapacityException.class, OrderEventHub.CapacityException.class})
+    public ResponseEntity<?> streamsFull(RuntimeException e) {
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(Map.of("error", e.getMessage()));
+    }
+}
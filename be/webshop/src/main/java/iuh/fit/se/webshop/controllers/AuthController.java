@@ -3,14 +3,16 @@ package iuh.fit.se.webshop.controllers;
 import iuh.fit.se.webshop.models.User;
 import iuh.fit.se.webshop.repositories.UserRepository;
 import iuh.fit.se.webshop.security.JwtService;
+import iuh.fit.se.webshop.services.PasswordHashingService;
+import iuh.fit.se.webshop.services.UserCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -18,51 +20,79 @@ import java.util.Map;
 public class AuthController {
     
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashing;
+    private final UserCache userCache;
     private final JwtService jwtService;
     
-    public AuthController(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtService jwtService) {
+    public AuthController(UserRepository userRepository, PasswordHashingService passwordHashing,
+                          UserCache userCache, JwtService jwtService) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashing = passwordHashing;
+        this.userCache = userCache;
         this.jwtService = jwtService;
     }
     
     @PostMapping("/register")
     @Operation(summary = "Register new user")
-    public ResponseEntity<?> register(@RequestBody RegisterRequest request) {
+    public CompletableFuture<ResponseEntity<?>> register(@RequestBody RegisterRequest request) {
+        // Reject before any database work when the hashing pool has no room
+        if (passwordHashing.isSaturated()) {
+            return CompletableFuture.failedFuture(passwordHashing.overloaded());
+        }
         if (userRepository.existsByUsername(request.username)) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Username already exists"));
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body(Map.of("error", "Username already exists")));
         }
         
-        User user = new User();
-        user.setUsername(request.username);
-        user.setPassword(passwordEncoder.encode(request.password));
-        user.setEmail(request.email);
-        user.setFullName(request.fullName);
-        user.setRole("USER");
-        
-        user = userRepository.save(user);
-        
-        String token = jwtService.generateToken(user.getUsername(), user.getRole(), user.getId());
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("token", token);
-        response.put("role", user.getRole());
-        response.put("username", user.getUsername());
-        
-        return ResponseEntity.ok(response);
+        return passwordHashing.encode(request.password).thenApplyAsync(hash -> {
+            User user = new User();
+            user.setUsername(request.username);
+            user.setPassword(hash);
+            user.setEmail(request.email);
+            user.setFullName(request.fullName);
+            user.setRole("USER");
+            
+            user = userRepository.save(user);
+            return tokenResponse(user);
+        }, passwordHashing.writeExecutor());
     }
     
     @PostMapping("/login")
     @Operation(summary = "Login user")
-    public ResponseEntity<?> login(@RequestBody LoginRequest request) {
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody LoginRequest request) {
+        if (passwordHashing.isSaturated()) {
+            return CompletableFuture.failedFuture(passwordHashing.overloaded());
+        }
         User user = userRepository.findByUsername(request.username)
                 .orElse(null);
         
-        if (user == null || !passwordEncoder.matches(request.password, user.getPassword())) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Invalid credentials"));
+        if (user == null) {
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.badRequest().body(Map.of("error", "Invalid credentials")));
         }
         
+        return passwordHashing.matches(request.password, user.getPassword()).thenApply(matches -> {
+            if (!matches) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid credentials"));
+            }
+            if (passwordHashing.needsRehash(user.getPassword())) {
+                rehash(user, request.password);
+            }
+            return tokenResponse(user);
+        });
+    }
+    
+    /** Re-encodes a hash made with an older cost in the background; a rejected or failed attempt is retried on the next login. */
+    private void rehash(User user, String rawPassword) {
+        passwordHashing.encode(rawPassword)
+                .thenAcceptAsync(hash -> {
+                    user.setPassword(hash);
+                    userCache.save(user);
+                }, passwordHashing.writeExecutor())
+                .exceptionally(e -> null);
+    }
+    
+    private ResponseEntity<?> tokenResponse(User user) {
         String token = jwtService.generateToken(user.getUsername(), user.getRole(), user.getId());
         
         Map<String, Object> response = new HashMap<>();
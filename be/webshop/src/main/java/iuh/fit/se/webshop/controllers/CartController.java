@@ -1,20 +1,16 @@
 package iuh.fit.se.webshop.controllers;
 
-import iuh.fit.se.webshop.models.CartItem;
 import iuh.fit.se.webshop.models.Product;
-import iuh.fit.se.webshop.models.User;
-import iuh.fit.se.webshop.repositories.CartItemRepository;
-import iuh.fit.se.webshop.repositories.ProductRepository;
-import iuh.fit.se.webshop.repositories.UserRepository;
+import iuh.fit.se.webshop.security.AuthenticatedUser;
+import iuh.fit.se.webshop.services.CartStore;
+import iuh.fit.se.webshop.services.CatalogCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.transaction.Transactional;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -22,53 +18,36 @@ import java.util.Map;
 @Tag(name = "Cart", description = "Shopping cart APIs")
 public class CartController {
     
-    private final CartItemRepository cartItemRepository;
-    private final UserRepository userRepository;
-    private final ProductRepository productRepository;
+    private final CartStore cartStore;
+    private final CatalogCache catalogCache;
     
-    public CartController(CartItemRepository cartItemRepository, UserRepository userRepository, ProductRepository productRepository) {
-        this.cartItemRepository = cartItemRepository;
-        this.userRepository = userRepository;
-        this.productRepository = productRepository;
+    public CartController(CartStore cartStore, CatalogCache catalogCache) {
+        this.cartStore = cartStore;
+        this.catalogCache = catalogCache;
     }
     
     @GetMapping
     @Operation(summary = "Get my cart", security = @SecurityRequirement(name = "bearerAuth"))
-    public ResponseEntity<?> getCart(Authentication authentication) {
-        if (authentication == null || authentication.getName() == null) {
+    public ResponseEntity<?> getCart(@AuthenticationPrincipal AuthenticatedUser principal) {
+        if (principal == null) {
             return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
         }
-        User user = userRepository.findByUsername(authentication.getName()).orElse(null);
-        if (user == null) return ResponseEntity.status(401).body(Map.of("error", "User not found"));
-        return ResponseEntity.ok(cartItemRepository.findByUserId(user.getId()));
+        return ResponseEntity.ok(cartStore.getItems(principal.id()));
     }
     
     @PostMapping
-    @Transactional
     @Operation(summary = "Add to cart", security = @SecurityRequirement(name = "bearerAuth"))
-    public ResponseEntity<?> addToCart(Authentication authentication, @RequestBody AddToCartRequest request) {
-        if (authentication == null || authentication.getName() == null) {
+    public ResponseEntity<?> addToCart(@AuthenticationPrincipal AuthenticatedUser principal, @RequestBody AddToCartRequest request) {
+        if (principal == null) {
             return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
         }
-        User user = userRepository.findByUsername(authentication.getName()).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(401).build();
-        }
         
-        Product product = productRepository.findById(request.productId).orElse(null);
+        Product product = catalogCache.findProduct(request.productId).orElse(null);
         if (product == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Product not found"));
         }
         
-        CartItem existing = cartItemRepository.findByUserIdAndProductId(user.getId(), request.productId).orElse(null);
-        
-        if (existing != null) {
-            existing.setQuantity(existing.getQuantity() + request.quantity);
-            cartItemRepository.save(existing);
-        } else {
-            CartItem newItem = new CartItem(user, product, request.quantity);
-            cartItemRepository.save(newItem);
-        }
+        cartStore.add(principal.id(), product, request.quantity);
         
         return ResponseEntity.ok(Map.of("result", "ok"));
     }
@@ -76,48 +55,29 @@ public class CartController {
     @PutMapping("/{id}")
     @Operation(summary = "Update cart item quantity", security = @SecurityRequirement(name = "bearerAuth"))
     public ResponseEntity<?> updateQuantity(
-            Authentication authentication,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @PathVariable Long id,
             @RequestBody UpdateQuantityRequest request) {
         
-        if (authentication == null || authentication.getName() == null) {
+        if (principal == null) {
             return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
         }
-        User user = userRepository.findByUsername(authentication.getName()).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(401).build();
-        }
         
-        CartItem item = cartItemRepository.findById(id).orElse(null);
-        if (item == null || !item.getUser().getId().equals(user.getId())) {
+        if (!cartStore.updateQuantity(principal.id(), id, request.quantity)) {
             return ResponseEntity.notFound().build();
         }
         
-        if (request.quantity <= 0) {
-            cartItemRepository.delete(item);
-        } else {
-            item.setQuantity(request.quantity);
-            cartItemRepository.save(item);
-        }
-        
         return ResponseEntity.ok(Map.of("result", "ok"));
     }
     
     @DeleteMapping("/{id}")
     @Operation(summary = "Remove cart item", security = @SecurityRequirement(name = "bearerAuth"))
-    public ResponseEntity<?> remove(Authentication authentication, @PathVariable Long id) {
-        if (authentication == null || authentication.getName() == null) {
+    public ResponseEntity<?> remove(@AuthenticationPrincipal AuthenticatedUser principal, @PathVariable Long id) {
+        if (principal == null) {
             return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
         }
-        User user = userRepository.findByUsername(authentication.getName()).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(401).build();
-        }
         
-        CartItem item = cartItemRepository.findById(id).orElse(null);
-        if (item != null && item.getUser().getId().equals(user.getId())) {
-            cartItemRepository.delete(item);
-        }
+        cartStore.remove(principal.id(), id);
         
         return ResponseEntity.ok(Map.of("result", "ok"));
     }
@@ -2,14 +2,17 @@ package iuh.fit.se.webshop.controllers;
 
 import iuh.fit.se.webshop.models.Category;
 import iuh.fit.se.webshop.repositories.CategoryRepository;
+import iuh.fit.se.webshop.services.CatalogCache;
+import iuh.fit.se.webshop.services.CatalogSnapshot;
+import iuh.fit.se.webshop.services.ProductSearchIndex;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("/api/categories")
@@ -17,22 +20,30 @@ import java.util.List;
 public class CategoryController {
     
     private final CategoryRepository categoryRepository;
+    private final CatalogCache catalogCache;
+    private final CatalogSnapshot catalogSnapshot;
+    private final ProductSearchIndex searchIndex;
     
-    public CategoryController(CategoryRepository categoryRepository) {
+    public CategoryController(CategoryRepository categoryRepository, CatalogCache catalogCache,
+                              CatalogSnapshot catalogSnapshot, ProductSearchIndex searchIndex) {
         this.categoryRepository = categoryRepository;
+        this.catalogCache = catalogCache;
+        this.catalogSnapshot = catalogSnapshot;
+        this.searchIndex = searchIndex;
     }
     
     @GetMapping
+    @Transactional(readOnly = true)
     @Operation(summary = "Get all categories")
-    public List<Category> getAll() {
-        return categoryRepository.findAll();
+    public ResponseEntity<byte[]> getAll(WebRequest webRequest) {
+        return CatalogSnapshot.respond(catalogSnapshot.categories(), webRequest);
     }
     
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Create new category (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
     public Category create(@RequestBody Category category) {
-        return categoryRepository.save(category);
+        return catalogCache.saveCategory(category);
     }
     
     @PutMapping("/{id}")
@@ -43,7 +54,10 @@ public class CategoryController {
             return ResponseEntity.notFound().build();
         }
         category.setId(id);
-        return ResponseEntity.ok(categoryRepository.save(category));
+        Category saved = catalogCache.saveCategory(category);
+        // Search hits embed their category; rebuild so renamed categories show up
+        searchIndex.rebuild();
+        return ResponseEntity.ok(saved);
     }
     
     @DeleteMapping("/{id}")
@@ -53,7 +67,7 @@ public class CategoryController {
         if (!categoryRepository.existsById(id)) {
             return ResponseEntity.notFound().build();
         }
-        categoryRepository.deleteById(id);
+        catalogCache.deleteCategory(id);
         return ResponseEntity.ok().build();
     }
 }
@@ -0,0 +1,116 @@
+package iuh.fit.se.webshop.controllers;
+
+import iuh.fit.se.webshop.services.ChatService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+@Tag(name = "Chat", description = "Live chat between visitors and admins")
+public class ChatController {
+    
+    private final ChatService chatService;
+    
+    public ChatController(ChatService chatService) {
+        this.chatService = chatService;
+    }
+    
+    @GetMapping("/chat")
+    @Operation(summary = "Recent messages of a chat thread")
+    public ResponseEntity<?> history(@RequestParam String threadId) {
+        List<ChatService.Message> messages = chatService.guestHistory(threadId);
+        if (messages == null) {
+            return ResponseEntity.status(404).body(Map.of("error", "Chat thread not found"));
+        }
+        return ResponseEntity.ok(messages);
+    }
+    
+    @PostMapping("/chat")
+    @Operation(summary = "Send a message as a visitor; starts a new thread when threadId is missing, 404 for an unknown one")
+    public ResponseEntity<?> post(@RequestBody GuestMessageRequest request) {
+        try {
+            ChatService.Message message = chatService.postGuest(request.threadId, request.text, request.name, request.contact);
+            if (message == null) {
+                return ResponseEntity.status(404).body(Map.of("error", "Chat thread not found"));
+            }
+            return ResponseEntity.ok(Map.of("threadId", message.threadId(), "message", message));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Server-Sent Events stream of admin replies (event chat:reply) for one thread")
+    public ResponseEntity<SseEmitter> stream(@RequestParam String threadId) {
+        SseEmitter emitter = chatService.subscribe(threadId);
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
+    }
+    
+    @GetMapping("/admin/chat")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Chat threads, or the messages of one thread (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> adminList(
+            @RequestParam(required = false) String threadId,
+            @RequestParam(defaultValue = "200") int limit) {
+        
+        if (threadId != null) {
+            return ResponseEntity.ok(chatService.history(threadId));
+        }
+        return ResponseEntity.ok(chatService.threads(Math.max(1, Math.min(limit, 1000))));
+    }
+    
+    @PostMapping("/admin/chat/reply")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Reply to a chat thread (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> reply(@RequestBody ReplyRequest request) {
+        try {
+            ChatService.Message message = chatService.postAdmin(request.threadId, request.text);
+            if (message == null) {
+                return ResponseEntity.status(404).body(Map.of("error", "Chat thread not found"));
+            }
+            return ResponseEntity.ok(message);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping(value = "/admin/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Server-Sent Events stream of all new messages (chat:new) and replies (chat:reply) (Admin only); "
+            + "EventSource cannot send headers, so the token may be passed as ?access_token=",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<SseEmitter> adminStream() {
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(chatService.subscribeAdmin());
+    }
+    
+    @GetMapping("/admin/chat/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Chat buffer, stream and write-behind statistics (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> stats() {
+        return ResponseEntity.ok(chatService.stats());
+    }
+    
+    public static class GuestMessageRequest {
+        public String threadId;
+        public String text;
+        public String name;
+        public String contact;
+    }
+    
+    public static class ReplyRequest {
+        public String threadId;
+        public String text;
+    }
+}
@@ -0,0 +1,161 @@
+package iuh.fit.se.webshop.controllers;
+
+import iuh.fit.se.webshop.services.ImageStore;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/images")
+@Tag(name = "Images", description = "Product image upload and delivery")
+public class ImageController {
+
+    // Below this size a plain channel copy is cheaper than handing the file to the connector
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    private final ImageStore imageStore;
+
+    public ImageController(ImageStore imageStore) {
+        this.imageStore = imageStore;
+    }
+
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Upload a product image (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> upload(@RequestPart("file") MultipartFile file) throws IOException {
+        String id;
+        try {
+            id = imageStore.store(file.getBytes());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.ok(describe(id));
+    }
+
+    @GetMapping("/{id}/{variant}")
+    @Operation(summary = "Get a resized product image (thumb, card or detail)")
+    public void get(@PathVariable String id, @PathVariable String variant,
+                    HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ImageStore.StoredImage image = imageStore.find(id, variant);
+        if (image == null) {
+            response.sendError(404);
+            return;
+        }
+
+        // Content for a given URL never changes, so one strong tag per URL is enough
+        String etag = "\"" + id + "-" + variant + "\"";
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", IMMUTABLE);
+        response.setHeader("Accept-Ranges", "bytes");
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(304);
+            return;
+        }
+
+        long length = image.length();
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.sendError(416);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(206);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(image.contentType());
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (count >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            // Tomcat streams the file with sendfile(2) once this handler returns; the bytes never enter the JVM
+            request.setAttribute("org.apache.tomcat.sendfile.filename", image.path().toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", start);
+            request.setAttribute("org.apache.tomcat.sendfile.end", end + 1);
+            return;
+        }
+        try (FileChannel file = FileChannel.open(image.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += file.transferTo(position, end + 1 - position, out);
+            }
+        }
+    }
+
+    /**
+     * One "bytes=" range as {start, end}; an empty array for a syntactically valid request that
+     * should just get the whole file (e.g. several ranges), or null when it cannot be satisfied.
+     */
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(length - 1, Long.parseLong(spec.substring(dash + 1)));
+            }
+            if (start >= length || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    static Map<String, Object> describe(String id) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", id);
+        result.put("url", ImageStore.url(id, "detail"));
+        Map<String, String> variants = new LinkedHashMap<>();
+        for (String variant : new String[]{"thumb", "card", "detail"}) {
+            variants.put(variant, ImageStore.url(id, variant));
+        }
+        result.put("variants", variants);
+        return result;
+    }
+}
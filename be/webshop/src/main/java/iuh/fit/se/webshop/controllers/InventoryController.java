@@ -0,0 +1,54 @@
+package iuh.fit.se.webshop.controllers;
+
+import iuh.fit.se.webshop.repositories.ProductRepository;
+import iuh.fit.se.webshop.services.InventoryService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/inventory")
+@Tag(name = "Inventory", description = "Product stock APIs")
+public class InventoryController {
+    
+    private final InventoryService inventoryService;
+    private final ProductRepository productRepository;
+    
+    public InventoryController(InventoryService inventoryService, ProductRepository productRepository) {
+        this.inventoryService = inventoryService;
+        this.productRepository = productRepository;
+    }
+    
+    @GetMapping("/{productId}")
+    @Operation(summary = "Get available stock (null = not tracked)")
+    public ResponseEntity<?> get(@PathVariable Long productId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("productId", productId);
+        response.put("available", inventoryService.getAvailable(productId));
+        return ResponseEntity.ok(response);
+    }
+    
+    @PutMapping("/{productId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Set available stock (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> set(@PathVariable Long productId, @RequestBody SetStockRequest request) {
+        if (!productRepository.existsById(productId)) {
+            return ResponseEntity.notFound().build();
+        }
+        if (request.available == null || request.available < 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "available must be >= 0"));
+        }
+        inventoryService.setAvailable(productId, request.available);
+        return ResponseEntity.ok(Map.of("productId", productId, "available", request.available));
+    }
+    
+    public static class SetStockRequest {
+        public Integer available;
+    }
+}
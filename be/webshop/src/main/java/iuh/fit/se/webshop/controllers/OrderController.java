@@ -1,22 +1,35 @@
 package iuh.fit.se.webshop.controllers;
 
+import iuh.fit.se.webshop.config.ReplicaPool;
 import iuh.fit.se.webshop.models.CartItem;
 import iuh.fit.se.webshop.models.Order;
 import iuh.fit.se.webshop.models.OrderItem;
-import iuh.fit.se.webshop.models.User;
-import iuh.fit.se.webshop.repositories.CartItemRepository;
 import iuh.fit.se.webshop.repositories.OrderRepository;
 import iuh.fit.se.webshop.repositories.UserRepository;
+import iuh.fit.se.webshop.resources.OrderResource;
+import iuh.fit.se.webshop.security.AuthenticatedUser;
+import iuh.fit.se.webshop.services.CartStore;
+import iuh.fit.se.webshop.services.IdempotencyService;
+import iuh.fit.se.webshop.services.InventoryService;
+import iuh.fit.se.webshop.services.OrderCodeGenerator;
+import iuh.fit.se.webshop.services.OrderEventHub;
+import iuh.fit.se.webshop.services.OrderExportService;
+import iuh.fit.se.webshop.services.SalesStatsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.transaction.Transactional;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.bind.annotation.*;
-import java.util.stream.Collectors;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -26,39 +39,83 @@ import java.util.*;
 @Tag(name = "Orders", description = "Order management APIs")
 public class OrderController {
     
+    private static final String CANCELLED = "Cancelled";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+    
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
-    private final CartItemRepository cartItemRepository;
+    private final CartStore cartStore;
+    private final InventoryService inventoryService;
+    private final OrderExportService orderExportService;
+    private final SalesStatsService salesStatsService;
+    private final OrderCodeGenerator orderCodeGenerator;
+    private final IdempotencyService idempotencyService;
+    private final ReplicaPool replicaPool;
+    private final OrderEventHub orderEventHub;
     
-    public OrderController(OrderRepository orderRepository, UserRepository userRepository, CartItemRepository cartItemRepository) {
+    public OrderController(OrderRepository orderRepository, UserRepository userRepository, CartStore cartStore,
+                           InventoryService inventoryService, OrderExportService orderExportService,
+                           SalesStatsService salesStatsService, OrderCodeGenerator orderCodeGenerator,
+                           IdempotencyService idempotencyService, ReplicaPool replicaPool,
+                           OrderEventHub orderEventHub) {
         this.orderRepository = orderRepository;
         this.userRepository = userRepository;
-        this.cartItemRepository = cartItemRepository;
+        this.cartStore = cartStore;
+        this.inventoryService = inventoryService;
+        this.orderExportService = orderExportService;
+        this.salesStatsService = salesStatsService;
+        this.orderCodeGenerator = orderCodeGenerator;
+        this.idempotencyService = idempotencyService;
+        this.replicaPool = replicaPool;
+        this.orderEventHub = orderEventHub;
     }
     
     @PostMapping
     @Transactional
     @Operation(summary = "Checkout (Create order from cart)", security = @SecurityRequirement(name = "bearerAuth"))
-    public ResponseEntity<?> checkout(Authentication authentication, @RequestBody CreateOrderRequest request) {
-        if (authentication == null || authentication.getName() == null) {
+    public ResponseEntity<?> checkout(
+            @AuthenticationPrincipal AuthenticatedUser principal,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody CreateOrderRequest request) {
+        if (principal == null) {
             return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
         }
-        User user = userRepository.findByUsername(authentication.getName()).orElse(null);
-        if (user == null) {
-            return ResponseEntity.status(401).build();
+        
+        String scopedKey = null;
+        if (idempotencyKey != null) {
+            if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid Idempotency-Key"));
+            }
+            scopedKey = IdempotencyService.scope(principal.id(), idempotencyKey);
+            ResponseEntity<?> previous = idempotencyService.replay(scopedKey);
+            if (previous != null) {
+                return previous;
+            }
+            if (!idempotencyService.begin(scopedKey)) {
+                return ResponseEntity.status(409).body(Map.of("error", "A request with this Idempotency-Key is in progress"));
+            }
         }
         
-        List<CartItem> cartItems = cartItemRepository.findByUserId(user.getId());
+        List<CartItem> cartItems = cartStore.getItems(principal.id());
         if (cartItems.isEmpty()) {
             return ResponseEntity.badRequest().body(Map.of("error", "Cart empty"));
         }
         
+        Map<Long, Integer> quantities = quantitiesByProduct(cartItems);
+        Long shortProductId = inventoryService.reserve(quantities);
+        if (shortProductId != null) {
+            return ResponseEntity.status(409).body(Map.of("error", "Out of stock", "productId", shortProductId));
+        }
+        // Give the stock back if anything below fails and the order is rolled back
+        releaseStockAfter(quantities, false);
+        
+        // Order date is taken after the reservation so inventory reconciliation never misses it
         Order order = new Order();
-        order.setUser(user);
+        order.setUser(userRepository.getReferenceById(principal.id()));
         order.setOrderDate(new Date());
         order.setStatus("Paid");
         order.setShippingAddress(request.shippingAddress);
-        order.setCode(UUID.randomUUID().toString().substring(0, 6).toUpperCase());
+        order.setCode(orderCodeGenerator.next());
         
         double total = 0;
         for (CartItem ci : cartItems) {
@@ -69,9 +126,13 @@ public class OrderController {
         order.setTotalAmount(total);
         
         Order savedOrder = orderRepository.save(order);
+        salesStatsService.recordNewOrder(savedOrder);
+        orderEventHub.orderCreated(principal.id(), OrderResource.of(savedOrder));
         
-        // Clear cart
-        cartItemRepository.deleteAll(cartItems);
+        // Remove the lines just bought; anything added to the cart meanwhile stays
+        cartStore.clear(principal.id(), cartItems);
+        // The order history this user opens next must come from the primary, not a lagging replica
+        replicaPool.pinToPrimary(principal.id());
         
         // Return simple response to avoid serialization issues
         Map<String, Object> response = new HashMap<>();
@@ -82,31 +143,30 @@ public class OrderController {
         response.put("totalAmount", savedOrder.getTotalAmount());
         response.put("shippingAddress", savedOrder.getShippingAddress());
         
+        if (scopedKey != null) {
+            idempotencyService.record(scopedKey, 200, response);
+        }
         return ResponseEntity.ok(response);
     }
     
     @GetMapping
+    @Transactional(readOnly = true)
     @Operation(summary = "Get my orders (User) or All (Admin)", security = @SecurityRequirement(name = "bearerAuth"))
     public ResponseEntity<?> getOrders(
-            Authentication authentication,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @RequestParam(required = false) String startDate,
             @RequestParam(required = false) String endDate) {
         
         try {
-            if (authentication == null || authentication.getName() == null) {
+            if (principal == null) {
                 return ResponseEntity.status(401).body(Map.of("error", "Not authenticated"));
             }
-            User user = userRepository.findByUsername(authentication.getName()).orElse(null);
-            if (user == null) {
-                return ResponseEntity.status(401).build();
-            }
             
-            boolean isAdmin = authentication.getAuthorities().stream()
-                    .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
+            boolean isAdmin = principal.isAdmin();
             
             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
             
-            List<Order> orders;
+            List<OrderResource.Row> rows;
             
             if (startDate != null && endDate != null) {
                 Date start = sdf.parse(startDate);
@@ -115,54 +175,20 @@ public class OrderController {
                 end = new Date(end.getTime() + 24 * 60 * 60 * 1000 - 1);
                 
                 if (isAdmin) {
-                    orders = orderRepository.findByDateRange(start, end);
+                    rows = orderRepository.findHistoryByDateRange(start, end);
                 } else {
-                    orders = orderRepository.findByUserIdAndDateRange(user.getId(), start, end);
+                    rows = orderRepository.findHistoryByUserIdAndDateRange(principal.id(), start, end);
                 }
             } else {
                 // No date filter
                 if (isAdmin) {
-                    orders = orderRepository.findAll();
+                    rows = orderRepository.findHistory();
                 } else {
-                    orders = orderRepository.findByUserIdOrderByOrderDateDesc(user.getId());
+                    rows = orderRepository.findHistoryByUserId(principal.id());
                 }
             }
             
-            // Convert to DTOs to avoid serialization issues
-            List<Map<String, Object>> orderDTOs = orders.stream().map(order -> {
-                Map<String, Object> dto = new HashMap<>();
-                dto.put("id", order.getId());
-                dto.put("code", order.getCode());
-                dto.put("orderDate", order.getOrderDate());
-                dto.put("status", order.getStatus());
-                dto.put("totalAmount", order.getTotalAmount());
-                dto.put("shippingAddress", order.getShippingAddress());
-                
-                // Add items
-                List<Map<String, Object>> itemDTOs = order.getItems().stream().map(item -> {
-                    Map<String, Object> itemDTO = new HashMap<>();
-                    itemDTO.put("id", item.getId());
-                    itemDTO.put("quantity", item.getQuantity());
-                    itemDTO.put("unitPrice", item.getUnitPrice());
-                    
-                    // Add product info
-                    if (item.getProduct() != null) {
-                        Map<String, Object> productDTO = new HashMap<>();
-                        productDTO.put("id", item.getProduct().getId());
-                        productDTO.put("name", item.getProduct().getName());
-                        productDTO.put("price", item.getProduct().getPrice());
-                        productDTO.put("image", item.getProduct().getImage());
-                        itemDTO.put("product", productDTO);
-                    }
-                    
-                    return itemDTO;
-                }).collect(Collectors.toList());
-                
-                dto.put("items", itemDTOs);
-                return dto;
-            }).collect(Collectors.toList());
-            
-            return ResponseEntity.ok(orderDTOs);
+            return ResponseEntity.ok(OrderResource.fromRows(rows));
             
         } catch (Exception e) {
             e.printStackTrace();
@@ -170,17 +196,98 @@ public class OrderController {
         }
     }
     
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Server-Sent Events stream of my orders (User) or all orders (Admin): order:created "
+            + "with the new order, order:status with {id, code, status, previousStatus}; "
+            + "EventSource cannot send headers, so the token may be passed as ?access_token=",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<SseEmitter> stream(@AuthenticationPrincipal AuthenticatedUser principal) {
+        if (principal == null) {
+            return ResponseEntity.status(401).build();
+        }
+        return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(orderEventHub.subscribe(principal));
+    }
+    
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Stream all orders as NDJSON or CSV (Admin)", security = @SecurityRequirement(name = "bearerAuth"))
+    public void export(
+            @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletResponse response) throws IOException {
+        
+        response.setCharacterEncoding("UTF-8");
+        if ("csv".equalsIgnoreCase(format)) {
+            response.setContentType("text/csv");
+            response.setHeader("Content-Disposition", "attachment; filename=\"orders.csv\"");
+            orderExportService.writeCsv(response.getOutputStream());
+        } else if ("ndjson".equalsIgnoreCase(format)) {
+            response.setContentType("application/x-ndjson");
+            response.setHeader("Content-Disposition", "attachment; filename=\"orders.ndjson\"");
+            orderExportService.writeNdjson(response.getOutputStream());
+        } else {
+            response.sendError(400, "Unsupported format: " + format);
+        }
+    }
+    
     @PutMapping("/{id}/status")
+    @Transactional
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Update order status (Admin)", security = @SecurityRequirement(name = "bearerAuth"))
-    public ResponseEntity<Order> updateStatus(@PathVariable Long id, @RequestBody UpdateStatusRequest request) {
+    public ResponseEntity<?> updateStatus(@PathVariable Long id, @RequestBody UpdateStatusRequest request) {
         Order order = orderRepository.findById(id).orElse(null);
         if (order == null) {
             return ResponseEntity.notFound().build();
         }
         
+        boolean wasCancelled = CANCELLED.equals(order.getStatus());
+        boolean cancelling = CANCELLED.equals(request.status);
+        Map<Long, Integer> quantities = Map.of();
+        if (wasCancelled != cancelling) {
+            quantities = new HashMap<>();
+            for (OrderItem item : order.getItems()) {
+                quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+            }
+        }
+        // Re-opening a cancelled order has to take its stock again. Its orderDate predates the
+        // last inventory flush, so startup reconciliation would miss it: write it through now
+        if (wasCancelled && !cancelling) {
+            Long shortProductId = inventoryService.reserveDurably(quantities);
+            if (shortProductId != null) {
+                return ResponseEntity.status(409).body(Map.of("error", "Out of stock", "productId", shortProductId));
+            }
+            releaseStockAfter(quantities, false);
+        }
+        
+        String oldStatus = order.getStatus();
         order.setStatus(request.status);
-        return ResponseEntity.ok(orderRepository.save(order));
+        Order saved = orderRepository.save(order);
+        salesStatsService.recordStatusChange(saved, oldStatus, request.status);
+        orderEventHub.statusChanged(saved.getUser().getId(),
+                new OrderEventHub.StatusChange(saved.getId(), saved.getCode(), saved.getStatus(), oldStatus));
+        if (!wasCancelled && cancelling) {
+            releaseStockAfter(quantities, true);
+        }
+        return ResponseEntity.ok(saved);
+    }
+    
+    /** Returns stock to inventory once the surrounding transaction commits (onCommit) or rolls back (!onCommit). */
+    private void releaseStockAfter(Map<Long, Integer> quantities, boolean onCommit) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if ((status == STATUS_COMMITTED) == onCommit) {
+                    inventoryService.release(quantities);
+                }
+            }
+        });
+    }
+    
+    private static Map<Long, Integer> quantitiesByProduct(List<CartItem> cartItems) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (CartItem ci : cartItems) {
+            quantities.merge(ci.getProduct().getId(), ci.getQuantity(), Integer::sum);
+        }
+        return quantities;
     }
     
     public static class CreateOrderRequest {
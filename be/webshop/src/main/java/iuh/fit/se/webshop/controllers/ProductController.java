@@ -2,37 +2,158 @@ package iuh.fit.se.webshop.controllers;
 
 import iuh.fit.se.webshop.models.Product;
 import iuh.fit.se.webshop.repositories.ProductRepository;
+import iuh.fit.se.webshop.services.CatalogCache;
+import iuh.fit.se.webshop.services.CatalogSnapshot;
+import iuh.fit.se.webshop.services.ImageStore;
+import iuh.fit.se.webshop.services.ProductExportService;
+import iuh.fit.se.webshop.services.ProductImportService;
+import iuh.fit.se.webshop.services.ProductSearchIndex;
+import iuh.fit.se.webshop.utils.ProductCursor;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/products")
 @Tag(name = "Products", description = "Product management APIs")
 public class ProductController {
     
+    private static final int DEFAULT_PAGE_SIZE = 24;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int DEFAULT_SEARCH_SIZE = 20;
+    
     private final ProductRepository productRepository;
+    private final CatalogCache catalogCache;
+    private final CatalogSnapshot catalogSnapshot;
+    private final ProductSearchIndex searchIndex;
+    private final ImageStore imageStore;
+    private final ProductImportService productImportService;
+    private final ProductExportService productExportService;
     
-    public ProductController(ProductRepository productRepository) {
+    public ProductController(ProductRepository productRepository, CatalogCache catalogCache,
+                             CatalogSnapshot catalogSnapshot, ProductSearchIndex searchIndex,
+                             ImageStore imageStore, ProductImportService productImportService,
+                             ProductExportService productExportService) {
         this.productRepository = productRepository;
+        this.catalogCache = catalogCache;
+        this.catalogSnapshot = catalogSnapshot;
+        this.searchIndex = searchIndex;
+        this.imageStore = imageStore;
+        this.productImportService = productImportService;
+        this.productExportService = productExportService;
     }
     
     @GetMapping
-    @Operation(summary = "Get all products")
-    public List<Product> getAll() {
-        return productRepository.findAll();
+    @Transactional(readOnly = true)
+    @Operation(summary = "Get all products, or one keyset page when limit/cursor/filters are given")
+    public ResponseEntity<?> getAll(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String sort,
+            WebRequest webRequest) {
+        
+        boolean paged = limit != null || cursor != null || categoryId != null
+                || minPrice != null || maxPrice != null || sort != null;
+        if (!paged) {
+            // Pre-serialized and pre-compressed; unchanged lists never reach the cache or Jackson
+            return CatalogSnapshot.respond(catalogSnapshot.products(), webRequest);
+        }
+        
+        // Answered before any cache or database access; the ETag/Last-Modified headers are set either way
+        if (webRequest.checkNotModified(catalogCache.productsETag(), catalogCache.productsLastModified())) {
+            return null;
+        }
+        
+        ProductCursor after;
+        try {
+            after = ProductCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        
+        String order = sort == null ? "id" : sort;
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // Fetch one extra row to know whether another page exists without a COUNT query
+        PageRequest window = PageRequest.of(0, size + 1);
+        
+        List<Product> rows;
+        switch (order) {
+            case "id" -> rows = productRepository.findPageById(categoryId, minPrice, maxPrice,
+                    after == null ? 0L : after.id(), window);
+            case "price_asc" -> {
+                if (after != null && after.price() == null) {
+                    return ResponseEntity.badRequest().body(Map.of("error", "Cursor does not match sort"));
+                }
+                rows = productRepository.findPageByPriceAsc(categoryId, minPrice, maxPrice,
+                        after == null ? -Double.MAX_VALUE : after.price(),
+                        after == null ? 0L : after.id(), window);
+            }
+            case "price_desc" -> {
+                if (after != null && after.price() == null) {
+                    return ResponseEntity.badRequest().body(Map.of("error", "Cursor does not match sort"));
+                }
+                rows = productRepository.findPageByPriceDesc(categoryId, minPrice, maxPrice,
+                        after == null ? Double.MAX_VALUE : after.price(),
+                        after == null ? Long.MAX_VALUE : after.id(), window);
+            }
+            default -> {
+                return ResponseEntity.badRequest().body(Map.of("error", "Unsupported sort: " + sort));
+            }
+        }
+        
+        boolean hasMore = rows.size() > size;
+        List<Product> items = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Product last = items.get(items.size() - 1);
+            nextCursor = "id".equals(order)
+                    ? new ProductCursor(null, last.getId()).encode()
+                    : ProductCursor.after(last).encode();
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("items", items);
+        response.put("nextCursor", nextCursor);
+        response.put("hasMore", hasMore);
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(response);
+    }
+    
+    @GetMapping("/search")
+    @Transactional(readOnly = true)
+    @Operation(summary = "Full-text product search (diacritic-insensitive, prefix match on last word)")
+    public List<Product> search(@RequestParam String q, @RequestParam(required = false) Integer limit) {
+        int size = limit == null ? DEFAULT_SEARCH_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return searchIndex.search(q, size);
     }
     
     @GetMapping("/{id}")
+    @Transactional(readOnly = true)
     @Operation(summary = "Get product by ID")
-    public ResponseEntity<Product> getById(@PathVariable Long id) {
-        return productRepository.findById(id)
-                .map(ResponseEntity::ok)
+    public ResponseEntity<Product> getById(@PathVariable Long id, WebRequest webRequest) {
+        if (webRequest.checkNotModified(catalogCache.productsETag(), catalogCache.productsLastModified())) {
+            return null;
+        }
+        return catalogCache.findProduct(id)
+                .map(product -> ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(product))
                 .orElse(ResponseEntity.notFound().build());
     }
     
@@ -40,7 +161,67 @@ public class ProductController {
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Create new product (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
     public Product create(@RequestBody Product product) {
-        return productRepository.save(product);
+        Product saved = catalogCache.saveProduct(product);
+        catalogCache.findProduct(saved.getId()).ifPresent(searchIndex::index);
+        return saved;
+    }
+    
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Create new product with an image upload (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> createWithImage(
+            @RequestPart("product") Product product,
+            @RequestPart(value = "image", required = false) MultipartFile image) throws IOException {
+        ResponseEntity<?> rejected = attachImage(product, image);
+        if (rejected != null) {
+            return rejected;
+        }
+        return ResponseEntity.ok(create(product));
+    }
+    
+    @PostMapping("/import")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Bulk import products from a CSV or NDJSON request body; bad rows are reported, not fatal (Admin only)",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> importProducts(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean createCategories,
+            @RequestParam(defaultValue = "false") boolean dryRun,
+            HttpServletRequest request) throws IOException {
+        
+        // Read from the request stream as it arrives, never buffered whole
+        try {
+            if ("csv".equalsIgnoreCase(format)) {
+                return ResponseEntity.ok(productImportService.importCsv(request.getInputStream(), createCategories, dryRun));
+            } else if ("ndjson".equalsIgnoreCase(format)) {
+                return ResponseEntity.ok(productImportService.importNdjson(request.getInputStream(), createCategories, dryRun));
+            }
+            return ResponseEntity.badRequest().body(Map.of("error", "Unsupported format: " + format));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Stream all products as NDJSON or CSV, in the format the import reads (Admin only)",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    public void exportProducts(
+            @RequestParam(defaultValue = "ndjson") String format,
+            HttpServletResponse response) throws IOException {
+        
+        response.setCharacterEncoding("UTF-8");
+        if ("csv".equalsIgnoreCase(format)) {
+            response.setContentType("text/csv");
+            response.setHeader("Content-Disposition", "attachment; filename=\"products.csv\"");
+            productExportService.writeCsv(response.getOutputStream());
+        } else if ("ndjson".equalsIgnoreCase(format)) {
+            response.setContentType("application/x-ndjson");
+            response.setHeader("Content-Disposition", "attachment; filename=\"products.ndjson\"");
+            productExportService.writeNdjson(response.getOutputStream());
+        } else {
+            response.sendError(400, "Unsupported format: " + format);
+        }
     }
     
     @PutMapping("/{id}")
@@ -51,7 +232,36 @@ public class ProductController {
             return ResponseEntity.notFound().build();
         }
         product.setId(id);
-        return ResponseEntity.ok(productRepository.save(product));
+        Product saved = catalogCache.saveProduct(product);
+        catalogCache.findProduct(id).ifPresent(searchIndex::index);
+        return ResponseEntity.ok(saved);
+    }
+    
+    @PutMapping(value = "/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Update product with an image upload (Admin only)", security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> updateWithImage(
+            @PathVariable Long id,
+            @RequestPart("product") Product product,
+            @RequestPart(value = "image", required = false) MultipartFile image) throws IOException {
+        ResponseEntity<?> rejected = attachImage(product, image);
+        if (rejected != null) {
+            return rejected;
+        }
+        return update(id, product);
+    }
+    
+    /** Stores the upload and points product.image at its detail variant; returns a 400 response if it is not an image. */
+    private ResponseEntity<?> attachImage(Product product, MultipartFile image) throws IOException {
+        if (image == null || image.isEmpty()) {
+            return null;
+        }
+        try {
+            product.setImage(ImageStore.url(imageStore.store(image.getBytes()), "detail"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        return null;
     }
     
     @DeleteMapping("/{id}")
@@ -61,7 +271,8 @@ public class ProductController {
         if (!productRepository.existsById(id)) {
             return ResponseEntity.notFound().build();
         }
-        productRepository.deleteById(id);
+        catalogCache.deleteProduct(id);
+        searchIndex.remove(id);
         return ResponseEntity.ok().build();
     }
 }
@@ -0,0 +1,62 @@
+package iuh.fit.se.webshop.controllers;
+
+import iuh.fit.se.webshop.services.SalesStatsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stats")
+@Tag(name = "Stats", description = "Sales dashboard APIs")
+public class StatsController {
+    
+    private final SalesStatsService salesStatsService;
+    
+    public StatsController(SalesStatsService salesStatsService) {
+        this.salesStatsService = salesStatsService;
+    }
+    
+    @GetMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Sales totals for today / month / year / all or a custom range (Admin)", security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> getStats(
+            @RequestParam(required = false) String range,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate) {
+        
+        LocalDate today = LocalDate.now();
+        LocalDate from;
+        LocalDate to;
+        try {
+            if (startDate != null || endDate != null) {
+                from = startDate == null ? null : LocalDate.parse(startDate);
+                to = endDate == null ? null : LocalDate.parse(endDate);
+            } else if ("today".equals(range)) {
+                from = today;
+                to = today;
+            } else if ("month".equals(range)) {
+                from = today.withDayOfMonth(1);
+                to = today.withDayOfMonth(today.lengthOfMonth());
+            } else if ("year".equals(range)) {
+                from = today.withDayOfYear(1);
+                to = today.withDayOfYear(today.lengthOfYear());
+            } else if (range == null || "all".equals(range)) {
+                from = null;
+                to = null;
+            } else {
+                return ResponseEntity.badRequest().body(Map.of("error", "Unsupported range: " + range));
+            }
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Dates must be yyyy-MM-dd"));
+        }
+        
+        return ResponseEntity.ok(salesStatsService.summarize(from, to));
+    }
+}
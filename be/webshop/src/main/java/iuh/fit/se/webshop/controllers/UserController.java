@@ -2,18 +2,21 @@ package iuh.fit.se.webshop.controllers;
 
 import iuh.fit.se.webshop.models.User;
 import iuh.fit.se.webshop.repositories.UserRepository;
+import iuh.fit.se.webshop.security.AuthenticatedUser;
+import iuh.fit.se.webshop.services.PasswordHashingService;
+import iuh.fit.se.webshop.services.UserCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/users")
@@ -21,11 +24,13 @@ import java.util.Map;
 public class UserController {
     
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashing;
+    private final UserCache userCache;
     
-    public UserController(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserController(UserRepository userRepository, PasswordHashingService passwordHashing, UserCache userCache) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashing = passwordHashing;
+        this.userCache = userCache;
     }
     
     @GetMapping
@@ -37,21 +42,25 @@ public class UserController {
     
     @GetMapping("/profile")
     @Operation(summary = "Get current user profile", security = @SecurityRequirement(name = "bearerAuth"))
-    public ResponseEntity<User> getProfile(Authentication authentication) {
-        String username = authentication.getName();
-        User user = userRepository.findByUsername(username).orElse(null);
+    public ResponseEntity<User> getProfile(@AuthenticationPrincipal AuthenticatedUser principal) {
+        if (principal == null) {
+            return ResponseEntity.status(401).build();
+        }
+        User user = userCache.findById(principal.id()).orElse(null);
         if (user == null) {
             return ResponseEntity.notFound().build();
         }
-        user.setPassword(null);
-        return ResponseEntity.ok(user);
+        // The cached instance is shared, so hand out a copy without the hash
+        return ResponseEntity.ok(withoutPassword(user));
     }
     
     @PutMapping("/profile")
     @Operation(summary = "Update current user profile", security = @SecurityRequirement(name = "bearerAuth"))
-    public ResponseEntity<User> updateProfile(Authentication authentication, @RequestBody UpdateProfileRequest request) {
-        String username = authentication.getName();
-        User user = userRepository.findByUsername(username).orElse(null);
+    public ResponseEntity<User> updateProfile(@AuthenticationPrincipal AuthenticatedUser principal, @RequestBody UpdateProfileRequest request) {
+        if (principal == null) {
+            return ResponseEntity.status(401).build();
+        }
+        User user = userRepository.findById(principal.id()).orElse(null);
         if (user == null) {
             return ResponseEntity.notFound().build();
         }
@@ -59,47 +68,58 @@ public class UserController {
         if (request.email != null) user.setEmail(request.email);
         if (request.fullName != null) user.setFullName(request.fullName);
         
-        user = userRepository.save(user);
+        user = userCache.save(user);
         user.setPassword(null);
         return ResponseEntity.ok(user);
     }
     
     @PutMapping("/{id}/password")
     @Operation(summary = "Change password", security = @SecurityRequirement(name = "bearerAuth"))
-    public ResponseEntity<?> changePassword(
-            Authentication authentication,
+    public CompletableFuture<ResponseEntity<?>> changePassword(
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @PathVariable Long id,
             @RequestBody ChangePasswordRequest request) {
         
-        User currentUser = userRepository.findByUsername(authentication.getName()).orElse(null);
-        if (currentUser == null) {
-            return ResponseEntity.status(401).build();
+        if (principal == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(401).build());
+        }
+        if (passwordHashing.isSaturated()) {
+            return CompletableFuture.failedFuture(passwordHashing.overloaded());
         }
         
         User user = userRepository.findById(id).orElse(null);
         if (user == null) {
-            return ResponseEntity.notFound().build();
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
         }
         
-        boolean isAdmin = authentication.getAuthorities().stream()
-                .anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"));
-        boolean isSelf = user.getId().equals(currentUser.getId());
+        boolean isAdmin = principal.isAdmin();
+        boolean isSelf = user.getId().equals(principal.id());
         
         if (!isAdmin && !isSelf) {
-            return ResponseEntity.status(403).build();
+            return CompletableFuture.completedFuture(ResponseEntity.status(403).build());
         }
         
         // Verify old password if self
+        CompletableFuture<Boolean> verified;
         if (isSelf && !isAdmin) {
-            if (request.oldPassword == null || !passwordEncoder.matches(request.oldPassword, user.getPassword())) {
-                return ResponseEntity.badRequest().body(Map.of("error", "Mật khẩu cũ không đúng"));
-            }
+            verified = request.oldPassword == null
+                    ? CompletableFuture.completedFuture(false)
+                    : passwordHashing.matches(request.oldPassword, user.getPassword());
+        } else {
+            verified = CompletableFuture.completedFuture(true);
         }
         
-        user.setPassword(passwordEncoder.encode(request.newPassword));
-        userRepository.save(user);
-        
-        return ResponseEntity.ok(Map.of("message", "Đổi mật khẩu thành công"));
+        return verified.thenCompose(ok -> {
+            if (!ok) {
+                return CompletableFuture.completedFuture(
+                        ResponseEntity.badRequest().body(Map.of("error", "Mật khẩu cũ không đúng")));
+            }
+            return passwordHashing.encode(request.newPassword).thenApplyAsync(hash -> {
+                user.setPassword(hash);
+                userCache.save(user);
+                return ResponseEntity.ok(Map.of("message", "Đổi mật khẩu thành công"));
+            }, passwordHashing.writeExecutor());
+        });
     }
     
     @PutMapping("/{id}")
@@ -121,7 +141,7 @@ public class UserController {
             user.setRole(request.role);
         }
         
-        user = userRepository.save(user);
+        user = userCache.save(user);
         user.setPassword(null);
         return ResponseEntity.ok(user);
     }
@@ -134,9 +154,22 @@ public class UserController {
             return ResponseEntity.notFound().build();
         }
         userRepository.deleteById(id);
+        userCache.evict(id);
         return ResponseEntity.ok().build();
     }
     
+    private static User withoutPassword(User source) {
+        User copy = new User();
+        copy.setId(source.getId());
+        copy.setUsername(source.getUsername());
+        copy.setEmail(source.getEmail());
+        copy.setRole(source.getRole());
+        copy.setFullName(source.getFullName());
+        copy.setPhone(source.getPhone());
+        copy.setAddress(source.getAddress());
+        return copy;
+    }
+    
     public static class UpdateProfileRequest {
         public String email;
         public String fullName;
@@ -0,0 +1,50 @@
+package iuh.fit.se.webshop.models;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+/** A chat message; written behind in batches by ChatService, which allocates the ids. */
+@Entity
+@Table(name = "chat_messages", indexes = @Index(name = "idx_chat_thread", columnList = "threadId, id"))
+public class ChatMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_messages_seq")
+    @SequenceGenerator(name = "chat_messages_seq", sequenceName = "chat_messages_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "threadId", length = 64, nullable = false)
+    private String threadId;
+
+    // "guest" or "admin"
+    @Column(name = "role", length = 10, nullable = false)
+    private String role;
+
+    @Column(name = "text", length = 2000, nullable = false)
+    private String text;
+
+    @Column(name = "name", length = 100)
+    private String name;
+
+    @Column(name = "contact", length = 200)
+    private String contact;
+
+    @Column(name = "createdAt", nullable = false)
+    private Date createdAt;
+
+    public ChatMessage() {}
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getThreadId() { return threadId; }
+    public void setThreadId(String threadId) { this.threadId = threadId; }
+    public String getRole() { return role; }
+    public void setRole(String role) { this.role = role; }
+    public String getText() { return text; }
+    public void setText(String text) { this.text = text; }
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+    public String getContact() { return contact; }
+    public void setContact(String contact) { this.contact = contact; }
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,52 @@
+package iuh.fit.se.webshop.models;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.util.Date;
+
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_created", columnList = "createdAt"))
+public class IdempotencyRecord implements Persistable<String> {
+    // "<userId>:<Idempotency-Key header>"
+    @Id
+    @Column(name = "id", length = 150)
+    private String id;
+
+    @Column(name = "statusCode", nullable = false)
+    private Integer statusCode;
+
+    @Column(name = "responseBody", columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(name = "createdAt", nullable = false)
+    private Date createdAt;
+
+    // The id is assigned, so without this save() would merge: a SELECT first, then an UPDATE of any existing row
+    @Transient
+    private boolean isNew = true;
+
+    public IdempotencyRecord() {}
+    public IdempotencyRecord(String id, Integer statusCode, String responseBody, Date createdAt) {
+        this.id = id;
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
+        this.createdAt = createdAt;
+    }
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public Integer getStatusCode() { return statusCode; }
+    public void setStatusCode(Integer statusCode) { this.statusCode = statusCode; }
+    public String getResponseBody() { return responseBody; }
+    public void setResponseBody(String responseBody) { this.responseBody = responseBody; }
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+
+    @Override
+    public boolean isNew() { return isNew; }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() { this.isNew = false; }
+}
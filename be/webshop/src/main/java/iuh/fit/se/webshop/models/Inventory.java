@@ -0,0 +1,33 @@
+package iuh.fit.se.webshop.models;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+@Entity
+@Table(name = "inventory")
+public class Inventory {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "available", nullable = false)
+    private Integer available;
+
+    // Time of the in-memory snapshot this row was written from; used to reconcile at startup
+    @Column(name = "flushedAt")
+    private Date flushedAt;
+
+    public Inventory() {}
+    public Inventory(Long productId, Integer available, Date flushedAt) {
+        this.productId = productId;
+        this.available = available;
+        this.flushedAt = flushedAt;
+    }
+
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+    public Integer getAvailable() { return available; }
+    public void setAvailable(Integer available) { this.available = available; }
+    public Date getFlushedAt() { return flushedAt; }
+    public void setFlushedAt(Date flushedAt) { this.flushedAt = flushedAt; }
+}
@@ -0,0 +1,68 @@
+package iuh.fit.se.webshop.models;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Per-day, per-status sales totals maintained incrementally by OrderController.
+ * A status change moves an order's amounts from one bucket to another.
+ */
+@Entity
+@Table(name = "sales_rollup")
+@IdClass(SalesRollup.Key.class)
+public class SalesRollup {
+    @Id
+    @Column(name = "salesDate")
+    private LocalDate salesDate;
+
+    @Id
+    @Column(name = "status", length = 50)
+    private String status;
+
+    @Column(name = "revenue", nullable = false)
+    private Double revenue;
+
+    @Column(name = "orderCount", nullable = false)
+    private Long orderCount;
+
+    @Column(name = "units", nullable = false)
+    private Long units;
+
+    public SalesRollup() {}
+
+    public LocalDate getSalesDate() { return salesDate; }
+    public void setSalesDate(LocalDate salesDate) { this.salesDate = salesDate; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public Double getRevenue() { return revenue; }
+    public void setRevenue(Double revenue) { this.revenue = revenue; }
+    public Long getOrderCount() { return orderCount; }
+    public void setOrderCount(Long orderCount) { this.orderCount = orderCount; }
+    public Long getUnits() { return units; }
+    public void setUnits(Long units) { this.units = units; }
+
+    public static class Key implements Serializable {
+        private LocalDate salesDate;
+        private String status;
+
+        public Key() {}
+        public Key(LocalDate salesDate, String status) {
+            this.salesDate = salesDate;
+            this.status = status;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key k)) return false;
+            return Objects.equals(salesDate, k.salesDate) && Objects.equals(status, k.status);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(salesDate, status);
+        }
+    }
+}
@@ -2,18 +2,24 @@ package iuh.fit.se.webshop.repositories;
 
 import iuh.fit.se.webshop.models.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
-    @Query("SELECT c FROM CartItem c JOIN FETCH c.product WHERE c.user.id = :userId")
+    @Query("SELECT c FROM CartItem c JOIN FETCH c.product p LEFT JOIN FETCH p.category WHERE c.user.id = :userId")
     List<CartItem> findByUserId(@Param("userId") Long userId);
     
     Optional<CartItem> findByUserIdAndProductId(Long userId, Long productId);
-    void deleteByUserId(Long userId);
+    
+    // One bulk DELETE instead of loading and removing the rows one by one
+    @Modifying
+    @Query("DELETE FROM CartItem c WHERE c.user.id = :userId AND c.id IN :ids")
+    int deleteByUserIdAndIdIn(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
 }
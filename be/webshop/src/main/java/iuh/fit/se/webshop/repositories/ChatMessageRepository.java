@@ -0,0 +1,18 @@
+package iuh.fit.se.webshop.repositories;
+
+import iuh.fit.se.webshop.models.ChatMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
+    // Newest first; the caller reverses the page
+    List<ChatMessage> findByThreadIdOrderByIdDesc(String threadId, Pageable pageable);
+
+    @Query("SELECT c.threadId FROM ChatMessage c GROUP BY c.threadId ORDER BY MAX(c.id) DESC")
+    List<String> findRecentThreadIds(Pageable pageable);
+}
@@ -0,0 +1,17 @@
+package iuh.fit.se.webshop.repositories;
+
+import iuh.fit.se.webshop.models.Inventory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface InventoryRepository extends JpaRepository<Inventory, Long> {
+    // Rows of [productId, orderDate, quantity] sold after the given instant, for startup reconciliation
+    @Query("SELECT i.product.id, o.orderDate, i.quantity FROM OrderItem i JOIN i.order o WHERE o.orderDate > :since AND o.status <> 'Cancelled'")
+    List<Object[]> findSoldSince(@Param("since") Date since);
+}
@@ -1,6 +1,7 @@
 package iuh.fit.se.webshop.repositories;
 
 import iuh.fit.se.webshop.models.Order;
+import iuh.fit.se.webshop.resources.OrderResource;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -11,12 +12,22 @@ import java.util.List;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
-    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product WHERE o.user.id = :userId ORDER BY o.orderDate DESC")
-    List<Order> findByUserIdOrderByOrderDateDesc(@Param("userId") Long userId);
+    // Order history as flat rows of only the returned columns; lines of one order stay adjacent
+    String HISTORY = "SELECT new iuh.fit.se.webshop.resources.OrderResource$Row("
+            + "o.id, o.code, o.orderDate, o.status, o.totalAmount, o.shippingAddress, "
+            + "i.id, i.quantity, i.unitPrice, p.id, p.name, p.price, p.image) "
+            + "FROM Order o LEFT JOIN o.items i LEFT JOIN i.product p ";
+    String HISTORY_ORDER = " ORDER BY o.orderDate DESC, o.id DESC, i.id";
+
+    @Query(HISTORY + HISTORY_ORDER)
+    List<OrderResource.Row> findHistory();
+    
+    @Query(HISTORY + "WHERE o.user.id = :userId" + HISTORY_ORDER)
+    List<OrderResource.Row> findHistoryByUserId(@Param("userId") Long userId);
     
-    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product WHERE o.orderDate >= :startDate AND o.orderDate <= :endDate ORDER BY o.orderDate DESC")
-    List<Order> findByDateRange(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
+    @Query(HISTORY + "WHERE o.orderDate >= :startDate AND o.orderDate <= :endDate" + HISTORY_ORDER)
+    List<OrderResource.Row> findHistoryByDateRange(@Param("startDate") Date startDate, @Param("endDate") Date endDate);
     
-    @Query("SELECT DISTINCT o FROM Order o LEFT JOIN FETCH o.items i LEFT JOIN FETCH i.product WHERE o.user.id = :userId AND o.orderDate >= :startDate AND o.orderDate <= :endDate ORDER BY o.orderDate DESC")
-    List<Order> findByUserIdAndDateRange(@Param("userId") Long userId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+    @Query(HISTORY + "WHERE o.user.id = :userId AND o.orderDate >= :startDate AND o.orderDate <= :endDate" + HISTORY_ORDER)
+    List<OrderResource.Row> findHistoryByUserIdAndDateRange(@Param("userId") Long userId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
 }
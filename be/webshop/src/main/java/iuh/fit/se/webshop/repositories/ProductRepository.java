@@ -1,9 +1,52 @@
 package iuh.fit.se.webshop.repositories;
 
 import iuh.fit.se.webshop.models.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
+    // Listing queries go through the query cache; any write to products or categories
+    // invalidates their cached results through Hibernate's update timestamps
+    @Override
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "product-queries")
+    })
+    List<Product> findAll();
+    
+    // Keyset (seek) pagination: each page starts strictly after the last row of the previous one,
+    // so the database walks the (price, id) / id index instead of skipping OFFSET rows.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "product-queries")
+    })
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE (:categoryId IS NULL OR p.category.id = :categoryId) AND (:minPrice IS NULL OR p.price >= :minPrice) AND (:maxPrice IS NULL OR p.price <= :maxPrice) AND p.id > :afterId ORDER BY p.id ASC")
+    List<Product> findPageById(@Param("categoryId") Long categoryId, @Param("minPrice") Double minPrice, @Param("maxPrice") Double maxPrice, @Param("afterId") Long afterId, Pageable pageable);
+    
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "product-queries")
+    })
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE (:categoryId IS NULL OR p.category.id = :categoryId) AND (:minPrice IS NULL OR p.price >= :minPrice) AND (:maxPrice IS NULL OR p.price <= :maxPrice) AND (p.price > :afterPrice OR (p.price = :afterPrice AND p.id > :afterId)) ORDER BY p.price ASC, p.id ASC")
+    List<Product> findPageByPriceAsc(@Param("categoryId") Long categoryId, @Param("minPrice") Double minPrice, @Param("maxPrice") Double maxPrice, @Param("afterPrice") Double afterPrice, @Param("afterId") Long afterId, Pageable pageable);
+    
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "product-queries")
+    })
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE (:categoryId IS NULL OR p.category.id = :categoryId) AND (:minPrice IS NULL OR p.price >= :minPrice) AND (:maxPrice IS NULL OR p.price <= :maxPrice) AND (p.price < :afterPrice OR (p.price = :afterPrice AND p.id < :afterId)) ORDER BY p.price DESC, p.id DESC")
+    List<Product> findPageByPriceDesc(@Param("categoryId") Long categoryId, @Param("minPrice") Double minPrice, @Param("maxPrice") Double maxPrice, @Param("afterPrice") Double afterPrice, @Param("afterId") Long afterId, Pageable pageable);
+    
+    // Rows added after a known id, e.g. by a bulk import; not cached, each page is read once
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id > :afterId ORDER BY p.id ASC")
+    List<Product> findAfterId(@Param("afterId") Long afterId, Pageable pageable);
 }
@@ -0,0 +1,41 @@
+package iuh.fit.se.webshop.repositories;
+
+import iuh.fit.se.webshop.models.SalesRollup;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, SalesRollup.Key> {
+    List<SalesRollup> findBySalesDateBetweenOrderBySalesDate(LocalDate from, LocalDate to);
+    
+    // Native writes name the only table they touch; otherwise Hibernate would empty every
+    // second-level cache region on each checkout
+    
+    // Atomic upsert so concurrent checkouts on the same day never lose an increment
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "sales_rollup"))
+    @Query(value = "INSERT INTO sales_rollup (salesDate, status, revenue, orderCount, units) VALUES (:day, :status, :revenue, :orders, :units) "
+            + "ON DUPLICATE KEY UPDATE revenue = revenue + VALUES(revenue), orderCount = orderCount + VALUES(orderCount), units = units + VALUES(units)",
+            nativeQuery = true)
+    void add(@Param("day") LocalDate day, @Param("status") String status, @Param("revenue") double revenue,
+             @Param("orders") long orders, @Param("units") long units);
+    
+    // Full rebuild from the orders table, used once to backfill an empty rollup
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "sales_rollup"))
+    @Query(value = "INSERT INTO sales_rollup (salesDate, status, revenue, orderCount, units) "
+            + "SELECT DATE(o.orderDate), o.status, COALESCE(SUM(o.totalAmount), 0), COUNT(*), COALESCE(SUM(x.units), 0) "
+            + "FROM orders o LEFT JOIN (SELECT order_id, SUM(quantity) AS units FROM order_items GROUP BY order_id) x ON x.order_id = o.id "
+            + "GROUP BY DATE(o.orderDate), o.status",
+            nativeQuery = true)
+    void rebuildFromOrders();
+}
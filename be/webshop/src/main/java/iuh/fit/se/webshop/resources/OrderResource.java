@@ -0,0 +1,75 @@
+package iuh.fit.se.webshop.resources;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import iuh.fit.se.webshop.models.Order;
+import iuh.fit.se.webshop.models.OrderItem;
+import iuh.fit.se.webshop.models.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * An order as returned by GET /api/orders. Built from {@link Row}s, the flat projection the
+ * order history queries select, so only the returned columns are read (no product
+ * description, category or user) and no entities are materialized.
+ */
+public record OrderResource(Long id, String code, Date orderDate, String status, Double totalAmount,
+                            String shippingAddress, List<Item> items) {
+
+    public record Item(Long id, Integer quantity, Double unitPrice,
+                       @JsonInclude(JsonInclude.Include.NON_NULL) ProductSummary product) {
+    }
+
+    public record ProductSummary(Long id, String name, Double price, String image) {
+    }
+
+    /** One order line; the item and product columns are null for an order without items. */
+    public record Row(Long orderId, String code, Date orderDate, String status, Double totalAmount,
+                      String shippingAddress, Long itemId, Integer quantity, Double unitPrice,
+                      Long productId, String productName, Double productPrice, String productImage) {
+    }
+
+    /** Groups rows into orders in one pass; rows of the same order must be adjacent. */
+    public static List<OrderResource> fromRows(List<Row> rows) {
+        List<OrderResource> orders = new ArrayList<>();
+        Row head = null;
+        List<Item> items = null;
+        for (Row row : rows) {
+            if (head == null || !head.orderId().equals(row.orderId())) {
+                if (head != null) {
+                    orders.add(of(head, items));
+                }
+                head = row;
+                items = new ArrayList<>();
+            }
+            if (row.itemId() != null) {
+                ProductSummary product = row.productId() == null ? null
+                        : new ProductSummary(row.productId(), row.productName(), row.productPrice(), row.productImage());
+                items.add(new Item(row.itemId(), row.quantity(), row.unitPrice(), product));
+            }
+        }
+        if (head != null) {
+            orders.add(of(head, items));
+        }
+        return Collections.unmodifiableList(orders);
+    }
+
+    /** The same shape from a freshly saved order whose items and products are already loaded. */
+    public static OrderResource of(Order order) {
+        List<Item> items = new ArrayList<>(order.getItems().size());
+        for (OrderItem item : order.getItems()) {
+            Product p = item.getProduct();
+            items.add(new Item(item.getId(), item.getQuantity(), item.getUnitPrice(),
+                    p == null ? null : new ProductSummary(p.getId(), p.getName(), p.getPrice(), p.getImage())));
+        }
+        return new OrderResource(order.getId(), order.getCode(), order.getOrderDate(), order.getStatus(),
+                order.getTotalAmount(), order.getShippingAddress(), Collections.unmodifiableList(items));
+    }
+
+    private static OrderResource of(Row head, List<Item> items) {
+        return new OrderResource(head.orderId(), head.code(), head.orderDate(), head.status(),
+                head.totalAmount(), head.shippingAddress(), Collections.unmodifiableList(items));
+    }
+}
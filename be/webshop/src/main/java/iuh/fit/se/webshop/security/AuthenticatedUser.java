@@ -0,0 +1,19 @@
+package iuh.fit.se.webshop.security;
+
+import java.security.Principal;
+
+/**
+ * Principal built by JwtAuthenticationFilter straight from the token claims,
+ * so controllers get the caller's id and role without a users lookup.
+ */
+public record AuthenticatedUser(Long id, String username, String role) implements Principal {
+    
+    @Override
+    public String getName() {
+        return username;
+    }
+    
+    public boolean isAdmin() {
+        return "ADMIN".equals(role);
+    }
+}
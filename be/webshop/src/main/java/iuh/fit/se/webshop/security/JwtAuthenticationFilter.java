@@ -1,5 +1,6 @@
 package iuh.fit.se.webshop.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -30,22 +31,24 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             @NonNull HttpServletResponse response,
             @NonNull FilterChain filterChain) throws ServletException, IOException {
         
-        final String authHeader = request.getHeader("Authorization");
+        final String jwt = resolveToken(request);
         
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+        if (jwt == null) {
             filterChain.doFilter(request, response);
             return;
         }
         
         try {
-            final String jwt = authHeader.substring(7);
-            final String username = jwtService.extractUsername(jwt);
-            final String role = jwtService.extractRole(jwt);
+            final Claims claims = jwtService.parseClaims(jwt);
+            final String username = claims.getSubject();
+            final String role = claims.get("role", String.class);
+            final Long userId = claims.get("userId", Long.class);
             
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            if (username != null && userId != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                var principal = new AuthenticatedUser(userId, username, role);
                 var authorities = Collections.singleton(new SimpleGrantedAuthority("ROLE_" + role));
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        username, null, authorities
+                        principal, null, authorities
                 );
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
@@ -56,4 +59,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         filterChain.doFilter(request, response);
     }
+    
+    /**
+     * The bearer token from the Authorization header. Server-Sent Event streams are also
+     * accepted with ?access_token=, because a browser EventSource cannot set headers; other
+     * endpoints do not take it, so tokens stay out of ordinary URLs and access logs.
+     */
+    static String resolveToken(HttpServletRequest request) {
+        final String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            return authHeader.substring(7);
+        }
+        if ("GET".equals(request.getMethod()) && request.getRequestURI().endsWith("/stream")) {
+            return request.getParameter("access_token");
+        }
+        return null;
+    }
 }
@@ -0,0 +1,157 @@
+package iuh.fit.se.webshop.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-bucket limits per client IP and per signed-in user. Requests fall into three groups
+ * (auth, catalog and image reads, everything else under /api), each with its own burst size
+ * and refill rate. Buckets live in a bounded Caffeine map and expire once idle.
+ *
+ * The user bucket is keyed on the user id of a verified token, so all of a user's sessions
+ * share one bucket and made-up bearer strings cannot create buckets of their own; a token
+ * that does not verify only counts against the IP. Verification goes through JwtService's
+ * verified-token cache, which JwtAuthenticationFilter then hits for the same token.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+    
+    private final JwtService jwtService;
+    private final boolean enabled;
+    private final Limit auth;
+    private final Limit catalog;
+    private final Limit api;
+    private final Cache<String, Bucket> buckets;
+    
+    public RateLimitFilter(JwtService jwtService,
+                           @Value("${rate-limit.enabled:true}") boolean enabled,
+                           @Value("${rate-limit.auth.capacity:10}") int authCapacity,
+                           @Value("${rate-limit.auth.per-second:1}") double authPerSecond,
+                           @Value("${rate-limit.catalog.capacity:100}") int catalogCapacity,
+                           @Value("${rate-limit.catalog.per-second:50}") double catalogPerSecond,
+                           @Value("${rate-limit.api.capacity:60}") int apiCapacity,
+                           @Value("${rate-limit.api.per-second:20}") double apiPerSecond,
+                           @Value("${rate-limit.max-buckets:100000}") long maxBuckets,
+                           @Value("${rate-limit.idle-seconds:600}") long idleSeconds) {
+        this.jwtService = jwtService;
+        this.enabled = enabled;
+        this.auth = new Limit("auth", authCapacity, authPerSecond);
+        this.catalog = new Limit("catalog", catalogCapacity, catalogPerSecond);
+        this.api = new Limit("api", apiCapacity, apiPerSecond);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofSeconds(idleSeconds))
+                .build();
+    }
+    
+    /** Burst size and refill rate of one route group. */
+    private record Limit(String group, int capacity, long intervalNanos, long burstNanos) {
+        Limit(String group, int capacity, double perSecond) {
+            this(group, capacity, (long) (1_000_000_000L / perSecond), (long) (1_000_000_000L / perSecond) * capacity);
+        }
+    }
+    
+    /**
+     * Token bucket kept as a single theoretical arrival time (GCRA), so taking a token
+     * is one compare-and-set with no lock.
+     */
+    private static final class Bucket {
+        private final AtomicLong tat = new AtomicLong(Long.MIN_VALUE);
+        
+        /** 0 if a token was taken, otherwise nanoseconds until one is available. */
+        long tryAcquire(Limit limit, long now) {
+            while (true) {
+                long current = tat.get();
+                long next = Math.max(current, now) + limit.intervalNanos();
+                long over = next - now - limit.burstNanos();
+                if (over > 0) {
+                    return over;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+    
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain) throws ServletException, IOException {
+        
+        Limit limit = enabled ? limitFor(request) : null;
+        if (limit == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        long now = System.nanoTime();
+        long wait = take(limit, "ip:" + request.getRemoteAddr(), now);
+        
+        if (wait == 0) {
+            Long userId = verifiedUserId(request);
+            if (userId != null) {
+                wait = take(limit, "user:" + userId, now);
+            }
+        }
+        
+        if (wait > 0) {
+            long retryAfter = Math.max(1, (wait + 999_999_999L) / 1_000_000_000L);
+            response.setStatus(429);
+            response.setHeader("Retry-After", String.valueOf(retryAfter));
+            response.setContentType("application/json");
+            response.getWriter().write("{\"error\":\"Too many requests\"}");
+            return;
+        }
+        
+        filterChain.doFilter(request, response);
+    }
+    
+    /** The user id of a valid bearer token, or null when there is none or it does not verify. */
+    private Long verifiedUserId(HttpServletRequest request) {
+        String jwt = JwtAuthenticationFilter.resolveToken(request);
+        if (jwt == null) {
+            return null;
+        }
+        try {
+            Claims claims = jwtService.parseClaims(jwt);
+            return claims.get("userId", Long.class);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+    
+    private long take(Limit limit, String client, long now) {
+        return buckets.get(limit.group() + '|' + client, k -> new Bucket()).tryAcquire(limit, now);
+    }
+    
+    private Limit limitFor(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith("/api/")) {
+            return null;
+        }
+        if (path.startsWith("/api/auth/")) {
+            return auth;
+        }
+        if ("GET".equals(request.getMethod())
+                && (path.startsWith("/api/products") || path.startsWith("/api/categories")
+                    || path.startsWith("/api/images/"))) {
+            return catalog;
+        }
+        return api;
+    }
+}
@@ -0,0 +1,29 @@
+package iuh.fit.se.webshop.services;
+
+import iuh.fit.se.webshop.models.CartItem;
+import iuh.fit.se.webshop.models.Product;
+
+import java.util.List;
+
+/**
+ * Storage for users' carts. "db" (default) reads and writes cart_items directly;
+ * "memory" keeps carts in process and writes them behind (see MemoryCartStore).
+ * Selected with the cart.store property.
+ */
+public interface CartStore {
+
+    List<CartItem> getItems(Long userId);
+
+    void add(Long userId, Product product, int quantity);
+
+    /** Sets the quantity of one line (removing it when quantity <= 0); false if the line is not the user's. */
+    boolean updateQuantity(Long userId, Long itemId, int quantity);
+
+    void remove(Long userId, Long itemId);
+
+    /**
+     * Removes the lines checkout read from getItems, leaving any added since; must be called
+     * inside the checkout transaction.
+     */
+    void clear(Long userId, List<CartItem> checkedOut);
+}
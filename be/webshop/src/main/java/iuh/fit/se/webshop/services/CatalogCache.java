@@ -0,0 +1,183 @@
+package iuh.fit.se.webshop.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import iuh.fit.se.webshop.config.ReplicaPool;
+import iuh.fit.se.webshop.models.Category;
+import iuh.fit.se.webshop.models.Product;
+import iuh.fit.se.webshop.repositories.CategoryRepository;
+import iuh.fit.se.webshop.repositories.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory cache in front of ProductRepository and CategoryRepository.
+ * Reads are served from memory; every catalog write goes through this class so the
+ * affected entries are evicted after the database write. Evictions name their key:
+ * Caffeine blocks invalidate(key) until an in-flight load of that key finishes, so a
+ * reader cannot re-insert a stale row after a write. invalidateAll() gives no such
+ * guarantee, so writes that touch every product (category changes, bulk imports) bump
+ * a generation that is part of the product key instead; a load still running under the
+ * old generation lands on a key no reader asks for again.
+ *
+ * Each write also bumps a product or category version, which the controllers turn into
+ * ETag / Last-Modified so repeat GETs can be answered with 304 without loading anything.
+ */
+@Service
+public class CatalogCache {
+
+    private static final String ALL = "all";
+
+    private record ProductKey(long generation, Long id) {
+    }
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ReplicaPool replicaPool;
+
+    private final Cache<ProductKey, Optional<Product>> productsById;
+    private final Cache<String, List<Product>> productLists;
+    private final Cache<String, List<Category>> categoryLists;
+
+    // Versions restart with the process, so the start time keeps old ETags from matching
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong productGeneration = new AtomicLong();
+    private final AtomicLong productVersion = new AtomicLong();
+    private final AtomicLong categoryVersion = new AtomicLong();
+    private volatile long productsModified = epoch;
+    private volatile long categoriesModified = epoch;
+
+    public CatalogCache(ProductRepository productRepository,
+                        CategoryRepository categoryRepository,
+                        ReplicaPool replicaPool,
+                        @Value("${catalog.cache.max-products:10000}") long maxProducts) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.replicaPool = replicaPool;
+        this.productsById = Caffeine.newBuilder().maximumSize(maxProducts).recordStats().build();
+        this.productLists = Caffeine.newBuilder().maximumSize(1).recordStats().build();
+        this.categoryLists = Caffeine.newBuilder().maximumSize(1).recordStats().build();
+    }
+
+    // ----- Reads -----
+
+    public List<Product> findAllProducts() {
+        return productLists.get(ALL, key -> List.copyOf(productRepository.findAll()));
+    }
+
+    public Optional<Product> findProduct(Long id) {
+        return productsById.get(new ProductKey(productGeneration.get(), id), key -> productRepository.findById(key.id()));
+    }
+
+    public List<Category> findAllCategories() {
+        return categoryLists.get(ALL, key -> List.copyOf(categoryRepository.findAll()));
+    }
+
+    // ----- Versions (read before loading, so a response is never tagged newer than its data) -----
+
+    public String productsETag() {
+        return "\"p-" + epoch + "-" + productVersion.get() + "\"";
+    }
+
+    public String categoriesETag() {
+        return "\"c-" + epoch + "-" + categoryVersion.get() + "\"";
+    }
+
+    public long productsLastModified() {
+        return productsModified;
+    }
+
+    public long categoriesLastModified() {
+        return categoriesModified;
+    }
+
+    // ----- Writes (database first, then evict) -----
+
+    public Product saveProduct(Product product) {
+        Product saved = productRepository.save(product);
+        productsById.invalidate(new ProductKey(productGeneration.get(), saved.getId()));
+        productLists.invalidate(ALL);
+        productsChanged();
+        return saved;
+    }
+
+    public void deleteProduct(Long id) {
+        productRepository.deleteById(id);
+        productsById.invalidate(new ProductKey(productGeneration.get(), id));
+        productLists.invalidate(ALL);
+        productsChanged();
+    }
+
+    /** After a bulk import that wrote the products table directly, without the repository. */
+    public void productsImported() {
+        dropAllProducts();
+        productLists.invalidate(ALL);
+        productsChanged();
+    }
+
+    public Category saveCategory(Category category) {
+        Category saved = categoryRepository.save(category);
+        // Products embed their category, so a rename has to drop them as well
+        categoryLists.invalidate(ALL);
+        dropAllProducts();
+        productLists.invalidate(ALL);
+        categoriesChanged();
+        return saved;
+    }
+
+    public void deleteCategory(Long id) {
+        categoryRepository.deleteById(id);
+        categoryLists.invalidate(ALL);
+        dropAllProducts();
+        productLists.invalidate(ALL);
+        categoriesChanged();
+    }
+
+    /** Moves readers to a new generation; clearing the old one only frees its memory. */
+    private void dropAllProducts() {
+        productGeneration.incrementAndGet();
+        productsById.invalidateAll();
+    }
+
+    private void productsChanged() {
+        productsModified = System.currentTimeMillis();
+        productVersion.incrementAndGet();
+        // The reloads that follow must not pick up a replica that has not seen this write yet
+        replicaPool.pinAllToPrimary();
+    }
+
+    private void categoriesChanged() {
+        categoriesModified = System.currentTimeMillis();
+        categoryVersion.incrementAndGet();
+        productsChanged();
+    }
+
+    // ----- Metrics -----
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("productsById", describe(productsById));
+        result.put("productList", describe(productLists));
+        result.put("categoryList", describe(categoryLists));
+        return result;
+    }
+
+    private static Map<String, Object> describe(Cache<?, ?> cache) {
+        CacheStats s = cache.stats();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("size", cache.estimatedSize());
+        m.put("hits", s.hitCount());
+        m.put("misses", s.missCount());
+        m.put("hitRate", s.hitRate());
+        m.put("evictions", s.evictionCount());
+        m.put("loadAvgMillis", s.averageLoadPenalty() / 1_000_000.0);
+        return m;
+    }
+}
@@ -0,0 +1,169 @@
+package iuh.fit.se.webshop.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The full product and category lists as ready-made JSON bytes, with gzip and deflate
+ * variants. A snapshot is rebuilt the first time it is asked for after the catalog
+ * version changes; otherwise serving the list is a lookup plus a byte copy.
+ */
+@Service
+public class CatalogSnapshot {
+
+    private final CatalogCache catalogCache;
+    private final ObjectMapper objectMapper;
+
+    private volatile Snapshot products;
+    private volatile Snapshot categories;
+
+    public CatalogSnapshot(CatalogCache catalogCache, ObjectMapper objectMapper) {
+        this.catalogCache = catalogCache;
+        this.objectMapper = objectMapper;
+    }
+
+    /** One serialized list; etag is the catalog version it was built from. */
+    public record Snapshot(String etag, long lastModified, byte[] identity, byte[] gzip, byte[] deflate) {
+
+        byte[] body(String encoding) {
+            return switch (encoding) {
+                case "gzip" -> gzip;
+                case "deflate" -> deflate;
+                default -> identity;
+            };
+        }
+
+        /** Each encoding is a different byte sequence, so it needs its own strong ETag. */
+        String etag(String encoding) {
+            return "identity".equals(encoding) ? etag : etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+        }
+    }
+
+    public Snapshot products() {
+        Snapshot current = products;
+        String etag = catalogCache.productsETag();
+        if (current != null && current.etag().equals(etag)) {
+            return current;
+        }
+        synchronized (this) {
+            current = products;
+            etag = catalogCache.productsETag();
+            if (current == null || !current.etag().equals(etag)) {
+                // The version is read before loading, so the tag is never newer than the data
+                current = build(etag, catalogCache.productsLastModified(), catalogCache::findAllProducts);
+                products = current;
+            }
+            return current;
+        }
+    }
+
+    public Snapshot categories() {
+        Snapshot current = categories;
+        String etag = catalogCache.categoriesETag();
+        if (current != null && current.etag().equals(etag)) {
+            return current;
+        }
+        synchronized (this) {
+            current = categories;
+            etag = catalogCache.categoriesETag();
+            if (current == null || !current.etag().equals(etag)) {
+                current = build(etag, catalogCache.categoriesLastModified(), catalogCache::findAllCategories);
+                categories = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Writes the snapshot in the best encoding the client accepts, or returns null after
+     * a 304 when the client's copy is current.
+     */
+    public static ResponseEntity<byte[]> respond(Snapshot snapshot, WebRequest webRequest) {
+        String encoding = negotiate(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (webRequest.checkNotModified(snapshot.etag(encoding), snapshot.lastModified())) {
+            return null;
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (!"identity".equals(encoding)) {
+            response.header(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        return response.body(snapshot.body(encoding));
+    }
+
+    private Snapshot build(String etag, long lastModified, Supplier<?> source) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(source.get());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize catalog snapshot", e);
+        }
+        try {
+            ByteArrayOutputStream gzip = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (OutputStream out = new GZIPOutputStream(gzip)) {
+                out.write(json);
+            }
+            ByteArrayOutputStream deflate = new ByteArrayOutputStream(json.length / 4 + 64);
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (OutputStream out = new DeflaterOutputStream(deflate, deflater)) {
+                out.write(json);
+            } finally {
+                deflater.end();
+            }
+            return new Snapshot(etag, lastModified, json, gzip.toByteArray(), deflate.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Picks gzip, then deflate, then identity; codings listed with q=0 are skipped. */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return "identity";
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        for (String part : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim();
+            boolean refused = false;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(param.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (refused) {
+                continue;
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = true;
+            } else if (coding.equals("deflate")) {
+                deflate = true;
+            }
+        }
+        return gzip ? "gzip" : deflate ? "deflate" : "identity";
+    }
+}
@@ -0,0 +1,509 @@
+package iuh.fit.se.webshop.services;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.webshop.models.ChatMessage;
+import iuh.fit.se.webshop.repositories.ChatMessageRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Live chat between shop visitors and admins. Each thread keeps its most recent messages
+ * in a fixed-size ring buffer (chat.buffer-size), so history reads never touch the database;
+ * messages are written behind to chat_messages in JDBC batches on a timer. New messages are
+ * pushed over Server-Sent Events: guest messages to every connected admin console, admin
+ * replies to the admins and to the guest's own stream. An open stream is an idle async
+ * request holding no thread, so thousands of open widgets cost a socket each. Like the
+ * order streams, each one is an SseSubscriber with a bounded queue (chat.stream-buffer-size)
+ * drained by a small push pool, so a stalled client never holds up the others.
+ *
+ * A thread id is the only thing that lets a visitor read or write a thread, so guests can
+ * only use ids this class issued (16 random bytes); a new thread is started by posting
+ * without one. The guest's name and contact are shown to admins only.
+ *
+ * Message ids are drawn from chat_messages_seq in blocks of 50, like MemoryCartStore's.
+ */
+@Service
+public class ChatService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatService.class);
+
+    public static final String GUEST = "guest";
+    public static final String ADMIN = "admin";
+    public static final int MAX_TEXT = 2000;
+    public static final int MAX_NAME = 100;
+    public static final int MAX_CONTACT = 200;
+
+    private static final int ID_BLOCK_SIZE = 50;
+    private static final int FLUSH_BATCH_SIZE = 500;
+    private static final Pattern THREAD_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    // The shape of newThreadId(); older widgets chose guessable ids such as a timestamp
+    private static final Pattern ISSUED_THREAD_ID = Pattern.compile("[A-Za-z0-9_-]{22}");
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // Retrying a batch that partly went through must not fail on the rows already written
+    private static final String INSERT = "INSERT INTO chat_messages (id, threadId, role, text, name, contact, createdAt) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE id = id";
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Message(String id, String threadId, String role, String text, long ts, String name, String contact) {
+
+        /** The message without the guest's details, as the guest-facing history shows it. */
+        Message withoutContact() {
+            return name == null && contact == null ? this : new Message(id, threadId, role, text, ts, null, null);
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record ThreadSummary(String threadId, long lastTs, String lastText, long count, String lastRole,
+                                String name, String contact) {
+    }
+
+    /** One conversation; the ring buffer and counters are guarded by its monitor. */
+    private static final class ChatThread {
+        final String id;
+        final Message[] ring;
+        final Set<SseSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+        int head;
+        int size;
+        long count;
+        String name;
+        String contact;
+        long lastActivity = System.currentTimeMillis();
+        boolean evicted;
+
+        ChatThread(String id, int capacity) {
+            this.id = id;
+            this.ring = new Message[capacity];
+        }
+
+        void append(Message message) {
+            ring[(head + size) % ring.length] = message;
+            if (size < ring.length) {
+                size++;
+            } else {
+                head = (head + 1) % ring.length;
+            }
+            count++;
+            if (message.name() != null) {
+                name = message.name();
+            }
+            if (message.contact() != null) {
+                contact = message.contact();
+            }
+            lastActivity = System.currentTimeMillis();
+        }
+
+        List<Message> recent() {
+            List<Message> messages = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                messages.add(ring[(head + i) % ring.length]);
+            }
+            return messages;
+        }
+
+        ThreadSummary summary() {
+            Message last = size == 0 ? null : ring[(head + size - 1) % ring.length];
+            return new ThreadSummary(id, last == null ? 0 : last.ts(), last == null ? null : last.text(), count,
+                    last == null ? null : last.role(), name, contact);
+        }
+    }
+
+    public static class CapacityException extends RuntimeException {
+        public CapacityException(String message) {
+            super(message);
+        }
+    }
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int streamBufferSize;
+    private final int maxThreads;
+    private final int maxStreams;
+    private final long idleMillis;
+    private final long streamTimeoutMillis;
+    private final int preloadThreads;
+
+    private final Map<String, ChatThread> threads = new ConcurrentHashMap<>();
+    private final Set<SseSubscriber> admins = ConcurrentHashMap.newKeySet();
+    private final Deque<Message> pending = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private final ExecutorService pusher;
+    private final LongAdder posted = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private final LongAdder pushed = new LongAdder();
+    private final LongAdder slowConsumersDropped = new LongAdder();
+
+    private long nextId;
+    private long blockEnd = -1;
+
+    public ChatService(ChatMessageRepository chatMessageRepository, JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                       @Value("${chat.buffer-size:100}") int bufferSize,
+                       @Value("${chat.stream-buffer-size:32}") int streamBufferSize,
+                       @Value("${chat.push-threads:2}") int pushThreads,
+                       @Value("${chat.max-threads:50000}") int maxThreads,
+                       @Value("${chat.max-streams:10000}") int maxStreams,
+                       @Value("${chat.idle-minutes:60}") long idleMinutes,
+                       @Value("${chat.stream-timeout-minutes:30}") long streamTimeoutMinutes,
+                       @Value("${chat.preload-threads:200}") int preloadThreads) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.streamBufferSize = streamBufferSize;
+        this.maxThreads = maxThreads;
+        this.maxStreams = maxStreams;
+        this.idleMillis = TimeUnit.MINUTES.toMillis(idleMinutes);
+        this.streamTimeoutMillis = TimeUnit.MINUTES.toMillis(streamTimeoutMinutes);
+        this.preloadThreads = preloadThreads;
+        AtomicInteger counter = new AtomicInteger();
+        this.pusher = Executors.newFixedThreadPool(pushThreads, r -> {
+            Thread t = new Thread(r, "chat-push-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Loads the most recently active threads so the admin list survives a restart. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        try {
+            for (String threadId : chatMessageRepository.findRecentThreadIds(PageRequest.of(0, preloadThreads))) {
+                lookup(threadId, false);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not preload chat threads: {}", e.getMessage());
+        }
+    }
+
+    public static boolean isValidThreadId(String threadId) {
+        return threadId != null && THREAD_ID.matcher(threadId).matches();
+    }
+
+    private static boolean isIssuedThreadId(String threadId) {
+        return threadId != null && ISSUED_THREAD_ID.matcher(threadId).matches();
+    }
+
+    /** A visitor's view of their thread, oldest first, or null when it does not exist. */
+    public List<Message> guestHistory(String threadId) {
+        if (!isIssuedThreadId(threadId)) {
+            return null;
+        }
+        ChatThread thread = lookup(threadId, false);
+        if (thread == null) {
+            return null;
+        }
+        List<Message> recent;
+        synchronized (thread) {
+            recent = thread.recent();
+        }
+        List<Message> view = new ArrayList<>(recent.size());
+        recent.forEach(message -> view.add(message.withoutContact()));
+        return view;
+    }
+
+    /** Recent messages of a thread, oldest first, for admins; empty for an unknown thread. */
+    public List<Message> history(String threadId) {
+        if (!isValidThreadId(threadId)) {
+            return List.of();
+        }
+        ChatThread thread = lookup(threadId, false);
+        if (thread == null) {
+            return List.of();
+        }
+        synchronized (thread) {
+            return thread.recent();
+        }
+    }
+
+    /** Most recently active threads first. */
+    public List<ThreadSummary> threads(int limit) {
+        List<ThreadSummary> summaries = new ArrayList<>(threads.size());
+        for (ChatThread thread : threads.values()) {
+            synchronized (thread) {
+                if (thread.size > 0) {
+                    summaries.add(thread.summary());
+                }
+            }
+        }
+        summaries.sort(Comparator.comparingLong(ThreadSummary::lastTs).reversed());
+        return summaries.size() > limit ? summaries.subList(0, limit) : summaries;
+    }
+
+    /**
+     * A visitor's message. Without a thread id it starts a new thread with an unguessable id,
+     * which the caller returns so the widget can keep using it. Returns null when the id was
+     * not issued here or the thread no longer exists.
+     */
+    public Message postGuest(String threadId, String text, String name, String contact) {
+        boolean create = threadId == null || threadId.isEmpty();
+        if (!create && !isIssuedThreadId(threadId)) {
+            return null;
+        }
+        return post(create ? newThreadId() : threadId, GUEST, text,
+                blankToNull(name, MAX_NAME, "name"), blankToNull(contact, MAX_CONTACT, "contact"), create);
+    }
+
+    /** An admin's reply, or null when the thread does not exist. */
+    public Message postAdmin(String threadId, String text) {
+        if (!isValidThreadId(threadId)) {
+            return null;
+        }
+        return post(threadId, ADMIN, text, null, null, false);
+    }
+
+    private Message post(String threadId, String role, String text, String name, String contact, boolean create) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("text is required");
+        }
+        String body = text.strip();
+        if (body.length() > MAX_TEXT) {
+            throw new IllegalArgumentException("text must be at most " + MAX_TEXT + " characters");
+        }
+        while (true) {
+            ChatThread thread = lookup(threadId, create);
+            if (thread == null) {
+                return null;
+            }
+            Message message;
+            synchronized (thread) {
+                if (thread.evicted) {
+                    continue;
+                }
+                message = new Message(String.valueOf(allocateId()), threadId, role, body,
+                        System.currentTimeMillis(), name, contact);
+                thread.append(message);
+                pending.add(message);
+            }
+            posted.increment();
+            publish(thread, message);
+            return message;
+        }
+    }
+
+    /** A guest's stream of admin replies for one thread, or null when the thread does not exist. */
+    public SseEmitter subscribe(String threadId) {
+        if (!isIssuedThreadId(threadId)) {
+            return null;
+        }
+        while (true) {
+            ChatThread thread = lookup(threadId, false);
+            if (thread == null) {
+                return null;
+            }
+            synchronized (thread) {
+                if (thread.evicted) {
+                    continue;
+                }
+                return open(thread.subscribers);
+            }
+        }
+    }
+
+    /** An admin console's stream of every new message. */
+    public SseEmitter subscribeAdmin() {
+        return open(admins);
+    }
+
+    private SseEmitter open(Set<SseSubscriber> group) {
+        if (openStreams.incrementAndGet() > maxStreams) {
+            openStreams.decrementAndGet();
+            throw new CapacityException("Too many open chat streams");
+        }
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        SseSubscriber subscriber = new SseSubscriber(emitter, streamBufferSize, pusher, pushed);
+        Runnable close = () -> {
+            if (subscriber.close()) {
+                group.remove(subscriber);
+                openStreams.decrementAndGet();
+            }
+        };
+        emitter.onCompletion(close);
+        emitter.onTimeout(close);
+        emitter.onError(e -> close.run());
+        group.add(subscriber);
+        try {
+            // Commits the response headers so the browser sees the stream open right away
+            emitter.send(SseEmitter.event().comment("connected"));
+        } catch (IOException e) {
+            close.run();
+        }
+        return emitter;
+    }
+
+    private void publish(ChatThread thread, Message message) {
+        if (admins.isEmpty() && thread.subscribers.isEmpty()) {
+            return;
+        }
+        boolean guest = GUEST.equals(message.role());
+        SseSubscriber.Event event;
+        try {
+            event = new SseSubscriber.Event(guest ? "chat:new" : "chat:reply", objectMapper.writeValueAsString(message));
+        } catch (JsonProcessingException e) {
+            log.warn("Could not serialize chat message {}: {}", message.id(), e.getMessage());
+            return;
+        }
+        offer(admins, event);
+        if (!guest) {
+            offer(thread.subscribers, event);
+        }
+    }
+
+    private void offer(Set<SseSubscriber> group, SseSubscriber.Event event) {
+        for (SseSubscriber subscriber : group) {
+            if (!subscriber.offer(event)) {
+                slowConsumersDropped.increment();
+            }
+        }
+    }
+
+    /** The live thread, loaded from the database on first use; null if unknown and create is false. */
+    private ChatThread lookup(String threadId, boolean create) {
+        ChatThread thread = threads.get(threadId);
+        if (thread != null) {
+            return thread;
+        }
+        List<ChatMessage> rows = chatMessageRepository.findByThreadIdOrderByIdDesc(threadId, PageRequest.of(0, bufferSize));
+        if (rows.isEmpty() && !create) {
+            return null;
+        }
+        if (threads.size() >= maxThreads) {
+            throw new CapacityException("Too many open chats");
+        }
+        ChatThread loaded = new ChatThread(threadId, bufferSize);
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            ChatMessage row = rows.get(i);
+            loaded.append(new Message(String.valueOf(row.getId()), threadId, row.getRole(), row.getText(),
+                    row.getCreatedAt().getTime(), row.getName(), row.getContact()));
+        }
+        if (!rows.isEmpty()) {
+            loaded.lastActivity = rows.get(0).getCreatedAt().getTime();
+        }
+        ChatThread existing = threads.putIfAbsent(threadId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private synchronized long allocateId() {
+        if (nextId > blockEnd) {
+            Long hi = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR chat_messages_seq", Long.class);
+            blockEnd = hi;
+            // The sequence starts at 1, so the first block is just {1}
+            nextId = Math.max(hi - ID_BLOCK_SIZE + 1, 1);
+        }
+        return nextId++;
+    }
+
+    private static String newThreadId() {
+        byte[] bytes = new byte[16];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String blankToNull(String value, int max, String field) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String stripped = value.strip();
+        if (stripped.length() > max) {
+            throw new IllegalArgumentException(field + " must be at most " + max + " characters");
+        }
+        return stripped;
+    }
+
+    @Scheduled(fixedDelayString = "${chat.flush-interval-ms:1000}")
+    public void flush() {
+        while (!pending.isEmpty()) {
+            List<Message> batch = new ArrayList<>();
+            Message message;
+            while (batch.size() < FLUSH_BATCH_SIZE && (message = pending.poll()) != null) {
+                batch.add(message);
+            }
+            List<Object[]> args = new ArrayList<>(batch.size());
+            for (Message m : batch) {
+                args.add(new Object[]{Long.valueOf(m.id()), m.threadId(), m.role(), m.text(), m.name(), m.contact(),
+                        new Timestamp(m.ts())});
+            }
+            try {
+                jdbcTemplate.batchUpdate(INSERT, args);
+                persisted.add(batch.size());
+            } catch (RuntimeException e) {
+                // Put the batch back in order; the next run retries it
+                log.warn("Chat flush failed, will retry: {}", e.getMessage());
+                flushFailures.increment();
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    pending.addFirst(batch.get(i));
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Keeps idle streams from being cut by proxies and evicts threads nobody is watching
+     * that have been quiet for chat.idle-minutes (only once everything is written, so a
+     * reload from the database sees every message).
+     */
+    @Scheduled(fixedDelayString = "${chat.heartbeat-ms:25000}")
+    public void heartbeat() {
+        offer(admins, SseSubscriber.HEARTBEAT);
+        for (ChatThread thread : threads.values()) {
+            offer(thread.subscribers, SseSubscriber.HEARTBEAT);
+        }
+        if (!pending.isEmpty()) {
+            return;
+        }
+        long idleBefore = System.currentTimeMillis() - idleMillis;
+        for (ChatThread thread : threads.values()) {
+            synchronized (thread) {
+                if (thread.subscribers.isEmpty() && thread.lastActivity < idleBefore) {
+                    thread.evicted = true;
+                    threads.remove(thread.id, thread);
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads.size());
+        stats.put("adminStreams", admins.size());
+        stats.put("openStreams", openStreams.get());
+        stats.put("posted", posted.sum());
+        stats.put("pushed", pushed.sum());
+        stats.put("slowConsumersDropped", slowConsumersDropped.sum());
+        stats.put("pendingWrites", pending.size());
+        stats.put("persisted", persisted.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        admins.forEach(subscriber -> subscriber.emitter.complete());
+        threads.values().forEach(thread -> thread.subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        pusher.shutdown();
+        flush();
+    }
+}
@@ -0,0 +1,72 @@
+package iuh.fit.se.webshop.services;
+
+import iuh.fit.se.webshop.models.CartItem;
+import iuh.fit.se.webshop.models.Product;
+import iuh.fit.se.webshop.repositories.CartItemRepository;
+import iuh.fit.se.webshop.repositories.UserRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+@ConditionalOnProperty(name = "cart.store", havingValue = "db", matchIfMissing = true)
+public class DatabaseCartStore implements CartStore {
+
+    private final CartItemRepository cartItemRepository;
+    private final UserRepository userRepository;
+
+    public DatabaseCartStore(CartItemRepository cartItemRepository, UserRepository userRepository) {
+        this.cartItemRepository = cartItemRepository;
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public List<CartItem> getItems(Long userId) {
+        return cartItemRepository.findByUserId(userId);
+    }
+
+    @Override
+    @Transactional
+    public void add(Long userId, Product product, int quantity) {
+        CartItem existing = cartItemRepository.findByUserIdAndProductId(userId, product.getId()).orElse(null);
+        if (existing != null) {
+            existing.setQuantity(existing.getQuantity() + quantity);
+            cartItemRepository.save(existing);
+        } else {
+            // Reference only: the insert needs the FK, not the user row
+            cartItemRepository.save(new CartItem(userRepository.getReferenceById(userId), product, quantity));
+        }
+    }
+
+    @Override
+    @Transactional
+    public boolean updateQuantity(Long userId, Long itemId, int quantity) {
+        CartItem item = cartItemRepository.findById(itemId).orElse(null);
+        if (item == null || !item.getUser().getId().equals(userId)) {
+            return false;
+        }
+        if (quantity <= 0) {
+            cartItemRepository.delete(item);
+        } else {
+            item.setQuantity(quantity);
+            cartItemRepository.save(item);
+        }
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public void remove(Long userId, Long itemId) {
+        CartItem item = cartItemRepository.findById(itemId).orElse(null);
+        if (item != null && item.getUser().getId().equals(userId)) {
+            cartItemRepository.delete(item);
+        }
+    }
+
+    @Override
+    public void clear(Long userId, List<CartItem> checkedOut) {
+        cartItemRepository.deleteByUserIdAndIdIn(userId, checkedOut.stream().map(CartItem::getId).toList());
+    }
+}
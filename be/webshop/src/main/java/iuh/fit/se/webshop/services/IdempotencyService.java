@@ -0,0 +1,136 @@
+package iuh.fit.se.webshop.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import iuh.fit.se.webshop.models.IdempotencyRecord;
+import iuh.fit.se.webshop.repositories.IdempotencyRecordRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the response of a request made with an Idempotency-Key so a retry gets the
+ * original answer instead of repeating the work. Recent keys live in a bounded in-memory
+ * cache; every key is also written to idempotency_keys in the caller's transaction, so the
+ * primary key rejects a duplicate even across nodes. Keys are scoped per user.
+ */
+@Service
+public class IdempotencyService {
+
+    private final IdempotencyRecordRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Duration retention;
+    private final Cache<String, IdempotencyRecord> recent;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    /** Another node already stored a response for this key; the transaction must roll back. */
+    public static class KeyTakenException extends RuntimeException {
+        private final String scopedKey;
+
+        public KeyTakenException(String scopedKey) {
+            super("Idempotency-Key already used: " + scopedKey);
+            this.scopedKey = scopedKey;
+        }
+
+        public String getScopedKey() {
+            return scopedKey;
+        }
+    }
+
+    public IdempotencyService(IdempotencyRecordRepository repository, ObjectMapper objectMapper,
+                              @Value("${idempotency.retention-hours:24}") long retentionHours,
+                              @Value("${idempotency.cache-size:10000}") long cacheSize) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.retention = Duration.ofHours(retentionHours);
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(retention)
+                .build();
+    }
+
+    public static String scope(Long userId, String key) {
+        return userId + ":" + key;
+    }
+
+    /** The stored response for this key, or null if it has not completed before. */
+    public ResponseEntity<?> replay(String scopedKey) {
+        IdempotencyRecord record = recent.getIfPresent(scopedKey);
+        if (record == null) {
+            record = repository.findById(scopedKey).orElse(null);
+            if (record == null) {
+                return null;
+            }
+            recent.put(scopedKey, record);
+        }
+        try {
+            JsonNode body = objectMapper.readTree(record.getResponseBody());
+            return ResponseEntity.status(record.getStatusCode()).header("Idempotent-Replayed", "true").body(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupt idempotency record " + scopedKey, e);
+        }
+    }
+
+    /**
+     * Claims the key for the current transaction. Returns false when another request with
+     * the same key is still running on this node; the claim is dropped when the transaction ends.
+     */
+    public boolean begin(String scopedKey) {
+        if (!inFlight.add(scopedKey)) {
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                inFlight.remove(scopedKey);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Stores the response in the current transaction; it becomes visible to replays once committed.
+     * Throws KeyTakenException when the key was completed elsewhere in the meantime.
+     */
+    public void record(String scopedKey, int statusCode, Object body) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        IdempotencyRecord record = new IdempotencyRecord(scopedKey, statusCode, json, new Date());
+        // Flush the caller's pending writes first, so a constraint error below can only be this key
+        repository.flush();
+        try {
+            repository.saveAndFlush(record);
+        } catch (DataIntegrityViolationException e) {
+            throw new KeyTakenException(scopedKey);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recent.put(scopedKey, record);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        repository.deleteOlderThan(new Date(System.currentTimeMillis() - retention.toMillis()));
+    }
+}
@@ -0,0 +1,225 @@
+package iuh.fit.se.webshop.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Product images on local disk. An upload is stored once under the hex SHA-256 of its bytes,
+ * so its URLs never change meaning and can be cached forever. Resized variants are made the
+ * first time each is requested and kept next to the original:
+ *
+ *   {images.dir}/originals/{id}
+ *   {images.dir}/{variant}/{id}.jpg (or .png when the source has transparency)
+ */
+@Service
+public class ImageStore {
+
+    public static final Map<String, Integer> VARIANTS = Map.of(
+            "thumb", 160,
+            "card", 480,
+            "detail", 1200
+    );
+
+    private static final Pattern ID = Pattern.compile("[0-9a-f]{32}");
+    private static final int LOCK_STRIPES = 64;
+
+    private final Path root;
+    private final long maxPixels;
+    private final float jpegQuality;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public ImageStore(@Value("${images.dir:./data/images}") String dir,
+                      @Value("${images.max-pixels:40000000}") long maxPixels,
+                      @Value("${images.jpeg-quality:0.85}") float jpegQuality) throws IOException {
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+        this.maxPixels = maxPixels;
+        this.jpegQuality = jpegQuality;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        Files.createDirectories(root.resolve("originals"));
+        for (String variant : VARIANTS.keySet()) {
+            Files.createDirectories(root.resolve(variant));
+        }
+    }
+
+    /** A stored variant ready to be sent. */
+    public record StoredImage(Path path, String contentType, long length) {
+    }
+
+    public static String url(String id, String variant) {
+        return "/api/images/" + id + "/" + variant;
+    }
+
+    /**
+     * Validates and stores an upload, returning its id. Uploading the same bytes again
+     * returns the same id without writing anything.
+     */
+    public String store(byte[] bytes) throws IOException {
+        checkDecodable(bytes);
+        String id = HexFormat.of().formatHex(sha256(bytes), 0, 16);
+        Path original = root.resolve("originals").resolve(id);
+        if (!Files.exists(original)) {
+            writeAtomically(original, tmp -> Files.write(tmp, bytes));
+        }
+        return id;
+    }
+
+    /** The variant file, generated on first use; null if the id or variant is unknown. */
+    public StoredImage find(String id, String variant) throws IOException {
+        Integer maxSide = VARIANTS.get(variant);
+        if (maxSide == null || id == null || !ID.matcher(id).matches()) {
+            return null;
+        }
+        StoredImage existing = existing(id, variant);
+        if (existing != null) {
+            return existing;
+        }
+        Path original = root.resolve("originals").resolve(id);
+        if (!Files.exists(original)) {
+            return null;
+        }
+        // Concurrent first requests for the same image wait for one resize instead of each doing it
+        synchronized (locks[Math.floorMod(id.hashCode() * 31 + variant.hashCode(), LOCK_STRIPES)]) {
+            existing = existing(id, variant);
+            if (existing != null) {
+                return existing;
+            }
+            BufferedImage source = ImageIO.read(original.toFile());
+            if (source == null) {
+                return null;
+            }
+            boolean alpha = source.getColorModel().hasAlpha();
+            BufferedImage resized = resize(source, maxSide, alpha);
+            Path target = root.resolve(variant).resolve(id + (alpha ? ".png" : ".jpg"));
+            writeAtomically(target, tmp -> {
+                if (alpha) {
+                    ImageIO.write(resized, "png", tmp.toFile());
+                } else {
+                    writeJpeg(resized, tmp);
+                }
+            });
+            return existing(id, variant);
+        }
+    }
+
+    private StoredImage existing(String id, String variant) throws IOException {
+        Path dir = root.resolve(variant);
+        Path jpg = dir.resolve(id + ".jpg");
+        if (Files.exists(jpg)) {
+            return new StoredImage(jpg, "image/jpeg", Files.size(jpg));
+        }
+        Path png = dir.resolve(id + ".png");
+        if (Files.exists(png)) {
+            return new StoredImage(png, "image/png", Files.size(png));
+        }
+        return null;
+    }
+
+    private void checkDecodable(byte[] bytes) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                // Check dimensions from the header before decoding anything
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new IllegalArgumentException("Image is too large");
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Scales so the longer side is at most maxSide, halving in steps to keep quality without area averaging. */
+    private static BufferedImage resize(BufferedImage source, int maxSide, boolean alpha) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        double scale = Math.min(1.0, maxSide / (double) Math.max(w, h));
+        int targetW = Math.max(1, (int) Math.round(w * scale));
+        int targetH = Math.max(1, (int) Math.round(h * scale));
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        BufferedImage current = source;
+        do {
+            w = Math.max(targetW, w / 2);
+            h = Math.max(targetH, h / 2);
+            BufferedImage step = new BufferedImage(w, h, type);
+            Graphics2D g = step.createGraphics();
+            try {
+                if (!alpha) {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, w, h);
+                }
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = step;
+        } while (w != targetW || h != targetH);
+        return current;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    @FunctionalInterface
+    private interface FileWrite {
+        void write(Path tmp) throws IOException;
+    }
+
+    /** Writes to a temp file and renames it, so readers never see a half-written image. */
+    private static void writeAtomically(Path target, FileWrite write) throws IOException {
+        Path tmp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            write.write(tmp);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
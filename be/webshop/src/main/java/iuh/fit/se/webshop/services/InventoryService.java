@@ -0,0 +1,184 @@
+package iuh.fit.se.webshop.services;
+
+import iuh.fit.se.webshop.models.Inventory;
+import iuh.fit.se.webshop.repositories.InventoryRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stock per product held as in-memory CAS counters, so concurrent buyers of the same SKU
+ * never wait on a row lock. Products without an inventory row are untracked (unlimited).
+ *
+ * Counters are written behind to the inventory table on a timer. At startup each row is
+ * reconciled by subtracting orders placed after its snapshot time; a crash can therefore
+ * undersell slightly but never oversell. A reservation reconciliation cannot see, such as
+ * a reopened order dated before the last flush, is written through with reserveDurably.
+ *
+ * Counters are loaded once every bean exists but before the web server starts, so no
+ * request ever sees a tracked product as untracked.
+ */
+@Service
+public class InventoryService implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryService.class);
+
+    private final InventoryRepository inventoryRepository;
+    private final Map<Long, AtomicInteger> available = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    public InventoryService(InventoryRepository inventoryRepository) {
+        this.inventoryRepository = inventoryRepository;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    private void load() {
+        List<Inventory> rows = inventoryRepository.findAll();
+        Map<Long, Integer> counts = new HashMap<>();
+        Date oldest = null;
+        for (Inventory row : rows) {
+            counts.put(row.getProductId(), row.getAvailable());
+            if (row.getFlushedAt() != null && (oldest == null || row.getFlushedAt().before(oldest))) {
+                oldest = row.getFlushedAt();
+            }
+        }
+        if (oldest != null) {
+            Map<Long, Date> flushedAt = new HashMap<>();
+            rows.forEach(r -> flushedAt.put(r.getProductId(), r.getFlushedAt()));
+            for (Object[] sold : inventoryRepository.findSoldSince(oldest)) {
+                Long productId = (Long) sold[0];
+                Date orderDate = (Date) sold[1];
+                Date snapshot = flushedAt.get(productId);
+                if (snapshot != null && orderDate.after(snapshot)) {
+                    counts.computeIfPresent(productId, (id, n) -> Math.max(0, n - (Integer) sold[2]));
+                    dirty.add(productId);
+                }
+            }
+        }
+        counts.forEach((id, n) -> available.put(id, new AtomicInteger(n)));
+        log.info("Inventory loaded: {} tracked products, {} reconciled", counts.size(), dirty.size());
+    }
+
+    /** Current stock, or null when the product is not tracked. */
+    public Integer getAvailable(Long productId) {
+        AtomicInteger counter = available.get(productId);
+        return counter == null ? null : counter.get();
+    }
+
+    /**
+     * Admin override of the stock level; persisted immediately. It goes through flush like
+     * every other change, so a timer flush that read the old value cannot save it afterwards.
+     */
+    public void setAvailable(Long productId, int quantity) {
+        available.computeIfAbsent(productId, id -> new AtomicInteger()).set(quantity);
+        dirty.add(productId);
+        flush();
+    }
+
+    /**
+     * Reserves every line or none. Returns the id of the first product that is short,
+     * or null when all lines were reserved.
+     */
+    public Long reserve(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> taken = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            AtomicInteger counter = available.get(line.getKey());
+            if (counter == null) {
+                continue;
+            }
+            if (!tryTake(counter, line.getValue())) {
+                release(taken);
+                return line.getKey();
+            }
+            taken.add(line);
+            dirty.add(line.getKey());
+        }
+        return null;
+    }
+
+    /**
+     * Like reserve, but the counters are saved before returning. Throws when they cannot
+     * be, after giving the stock back, so the caller's transaction rolls back.
+     */
+    public Long reserveDurably(Map<Long, Integer> quantities) {
+        Long shortProductId = reserve(quantities);
+        if (shortProductId == null && !write()) {
+            release(quantities);
+            throw new IllegalStateException("Could not save the stock reservation");
+        }
+        return shortProductId;
+    }
+
+    public void release(Map<Long, Integer> quantities) {
+        release(quantities.entrySet());
+    }
+
+    private void release(Collection<Map.Entry<Long, Integer>> lines) {
+        for (Map.Entry<Long, Integer> line : lines) {
+            AtomicInteger counter = available.get(line.getKey());
+            if (counter != null) {
+                counter.addAndGet(line.getValue());
+                dirty.add(line.getKey());
+            }
+        }
+    }
+
+    private static boolean tryTake(AtomicInteger counter, int quantity) {
+        while (true) {
+            int current = counter.get();
+            if (current < quantity) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.flush-interval-ms:1000}")
+    public void flush() {
+        write();
+    }
+
+    /** One write at a time, so rows are saved in the order their counters were read. False if the save failed. */
+    private synchronized boolean write() {
+        if (dirty.isEmpty()) {
+            return true;
+        }
+        // Snapshot time is taken before reading counters; see class comment
+        Date snapshotAt = new Date();
+        List<Inventory> rows = new ArrayList<>();
+        for (Iterator<Long> it = dirty.iterator(); it.hasNext(); ) {
+            Long productId = it.next();
+            it.remove();
+            AtomicInteger counter = available.get(productId);
+            if (counter != null) {
+                rows.add(new Inventory(productId, counter.get(), snapshotAt));
+            }
+        }
+        try {
+            inventoryRepository.saveAll(rows);
+            return true;
+        } catch (RuntimeException e) {
+            rows.forEach(r -> dirty.add(r.getProductId()));
+            log.warn("Inventory flush failed, will retry: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,329 @@
+package iuh.fit.se.webshop.services;
+
+import iuh.fit.se.webshop.models.CartItem;
+import iuh.fit.se.webshop.models.Product;
+import iuh.fit.se.webshop.repositories.CartItemRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps each user's cart in memory, loaded from cart_items on first access.
+ * Changes are coalesced per line and written behind in JDBC batches on a timer;
+ * carts idle for longer than cart.memory.idle-seconds are evicted once clean.
+ *
+ * Lines keep the product only for its id: getItems resolves it again through CatalogCache,
+ * so a price or name changed after the line was added is what the cart and checkout see.
+ *
+ * Line ids are drawn from cart_items_seq in blocks of 50, the same blocks Hibernate's
+ * pooled optimizer uses, so ids stay unique whichever store wrote the row.
+ */
+@Service
+@ConditionalOnProperty(name = "cart.store", havingValue = "memory")
+public class MemoryCartStore implements CartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MemoryCartStore.class);
+    private static final int ID_BLOCK_SIZE = 50;
+
+    private static final String UPSERT = "INSERT INTO cart_items (id, user_id, product_id, quantity) VALUES (?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)";
+    private static final String DELETE = "DELETE FROM cart_items WHERE id = ?";
+
+    private final CartItemRepository cartItemRepository;
+    private final CatalogCache catalogCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final long idleMillis;
+    private final Map<Long, UserCart> carts = new ConcurrentHashMap<>();
+
+    private long nextId;
+    private long blockEnd = -1;
+
+    public MemoryCartStore(CartItemRepository cartItemRepository, CatalogCache catalogCache, JdbcTemplate jdbcTemplate,
+                           @Value("${cart.memory.idle-seconds:1800}") long idleSeconds) {
+        this.cartItemRepository = cartItemRepository;
+        this.catalogCache = catalogCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.idleMillis = idleSeconds * 1000;
+    }
+
+    /** One user's cart; every access holds its monitor. */
+    private static final class UserCart {
+        final Long userId;
+        final Map<Long, CartItem> linesByProduct = new LinkedHashMap<>();
+        final Set<Long> dirty = new HashSet<>();
+        final Set<Long> deleted = new HashSet<>();
+        long lastAccess = System.currentTimeMillis();
+        boolean evicted;
+
+        UserCart(Long userId) {
+            this.userId = userId;
+        }
+
+        CartItem byId(Long itemId) {
+            for (CartItem line : linesByProduct.values()) {
+                if (line.getId().equals(itemId)) {
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        boolean isDirty() {
+            return !dirty.isEmpty() || !deleted.isEmpty();
+        }
+    }
+
+    private interface CartAction<T> {
+        T apply(UserCart cart);
+    }
+
+    /** Runs the action against the live cart, retrying if it was evicted between lookup and lock. */
+    private <T> T withCart(Long userId, CartAction<T> action) {
+        while (true) {
+            UserCart cart = carts.computeIfAbsent(userId, this::load);
+            synchronized (cart) {
+                if (cart.evicted) {
+                    continue;
+                }
+                cart.lastAccess = System.currentTimeMillis();
+                return action.apply(cart);
+            }
+        }
+    }
+
+    private UserCart load(Long userId) {
+        UserCart cart = new UserCart(userId);
+        for (CartItem item : cartItemRepository.findByUserId(userId)) {
+            item.setUser(null);
+            cart.linesByProduct.put(item.getProduct().getId(), item);
+        }
+        return cart;
+    }
+
+    @Override
+    public List<CartItem> getItems(Long userId) {
+        List<CartItem> copy = withCart(userId, cart -> {
+            List<CartItem> lines = new ArrayList<>(cart.linesByProduct.size());
+            for (CartItem line : cart.linesByProduct.values()) {
+                CartItem item = new CartItem(null, line.getProduct(), line.getQuantity());
+                item.setId(line.getId());
+                lines.add(item);
+            }
+            return lines;
+        });
+        // Resolved outside the cart lock, since a cache miss goes to the database
+        List<CartItem> items = new ArrayList<>(copy.size());
+        for (CartItem item : copy) {
+            Product product = catalogCache.findProduct(item.getProduct().getId()).orElse(null);
+            if (product == null) {
+                // Deleted since it was added, so it can never be bought
+                remove(userId, item.getId());
+            } else {
+                item.setProduct(product);
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    @Override
+    public void add(Long userId, Product product, int quantity) {
+        withCart(userId, cart -> {
+            CartItem line = cart.linesByProduct.get(product.getId());
+            if (line == null) {
+                line = new CartItem(null, product, quantity);
+                line.setId(allocateId());
+                cart.linesByProduct.put(product.getId(), line);
+            } else {
+                line.setQuantity(line.getQuantity() + quantity);
+            }
+            cart.dirty.add(line.getId());
+            return null;
+        });
+    }
+
+    @Override
+    public boolean updateQuantity(Long userId, Long itemId, int quantity) {
+        return withCart(userId, cart -> {
+            CartItem line = cart.byId(itemId);
+            if (line == null) {
+                return false;
+            }
+            if (quantity <= 0) {
+                removeLine(cart, line);
+            } else {
+                line.setQuantity(quantity);
+                cart.dirty.add(itemId);
+            }
+            return true;
+        });
+    }
+
+    @Override
+    public void remove(Long userId, Long itemId) {
+        withCart(userId, cart -> {
+            CartItem line = cart.byId(itemId);
+            if (line != null) {
+                removeLine(cart, line);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void clear(Long userId, List<CartItem> checkedOut) {
+        // Durable delete inside the checkout transaction; the in-memory lines go once it commits
+        cartItemRepository.deleteByUserIdAndIdIn(userId, checkedOut.stream().map(CartItem::getId).toList());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                withCart(userId, cart -> {
+                    for (CartItem item : checkedOut) {
+                        CartItem line = cart.byId(item.getId());
+                        if (line == null) {
+                            continue;
+                        }
+                        int left = line.getQuantity() - item.getQuantity();
+                        if (left > 0) {
+                            // Added to after checkout read it: keep the extra and write the row back
+                            line.setQuantity(left);
+                            cart.dirty.add(line.getId());
+                        } else {
+                            // Marking the id deleted also removes a row a concurrent flush may have re-inserted
+                            removeLine(cart, line);
+                        }
+                    }
+                    return null;
+                });
+            }
+        });
+    }
+
+    private static void removeLine(UserCart cart, CartItem line) {
+        cart.linesByProduct.remove(line.getProduct().getId());
+        cart.dirty.remove(line.getId());
+        cart.deleted.add(line.getId());
+    }
+
+    private synchronized long allocateId() {
+        if (nextId > blockEnd) {
+            Long hi = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR cart_items_seq", Long.class);
+            blockEnd = hi;
+            nextId = hi - ID_BLOCK_SIZE + 1;
+        }
+        return nextId++;
+    }
+
+    /** One row of a flush, kept with its cart so a failed write can be put back or dropped. */
+    private record PendingWrite(UserCart cart, Long id, Object[] args) {
+    }
+
+    @Scheduled(fixedDelayString = "${cart.memory.flush-interval-ms:2000}")
+    public void flush() {
+        List<PendingWrite> upserts = new ArrayList<>();
+        List<PendingWrite> deletes = new ArrayList<>();
+        long idleBefore = System.currentTimeMillis() - idleMillis;
+
+        for (UserCart cart : carts.values()) {
+            synchronized (cart) {
+                if (cart.isDirty()) {
+                    for (Long id : cart.dirty) {
+                        CartItem line = cart.byId(id);
+                        if (line != null) {
+                            upserts.add(new PendingWrite(cart, id,
+                                    new Object[]{id, cart.userId, line.getProduct().getId(), line.getQuantity()}));
+                        }
+                    }
+                    for (Long id : cart.deleted) {
+                        deletes.add(new PendingWrite(cart, id, new Object[]{id}));
+                    }
+                    cart.dirty.clear();
+                    cart.deleted.clear();
+                } else if (cart.lastAccess < idleBefore) {
+                    cart.evicted = true;
+                    carts.remove(cart.userId, cart);
+                }
+            }
+        }
+
+        int retrying = write(UPSERT, upserts, true) + write(DELETE, deletes, false);
+        if (retrying > 0) {
+            log.warn("Cart flush failed for {} rows, will retry", retrying);
+        }
+    }
+
+    /**
+     * Writes the rows as one batch. If the batch fails, every row is written on its own so
+     * one bad row cannot hold back the rest: a row the database rejects for good (a product
+     * or user deleted since the line was added) is dropped with its line, any other failure
+     * is marked for the next run. Returns the number of rows to retry.
+     */
+    private int write(String sql, List<PendingWrite> writes, boolean upsert) {
+        if (writes.isEmpty()) {
+            return 0;
+        }
+        try {
+            jdbcTemplate.batchUpdate(sql, writes.stream().map(PendingWrite::args).toList());
+            return 0;
+        } catch (DataAccessException e) {
+            // Upserts and deletes by id are idempotent, so rows the batch did write are safe to repeat
+            log.debug("Cart flush batch failed, retrying row by row: {}", e.getMessage());
+        }
+        int retrying = 0;
+        for (PendingWrite write : writes) {
+            try {
+                jdbcTemplate.update(sql, write.args());
+            } catch (DataIntegrityViolationException e) {
+                log.warn("Dropping cart line {} of user {}: {}", write.id(), write.cart().userId, e.getMessage());
+                if (upsert) {
+                    drop(write);
+                }
+            } catch (DataAccessException e) {
+                retry(write, upsert);
+                retrying++;
+            }
+        }
+        return retrying;
+    }
+
+    private static void drop(PendingWrite write) {
+        UserCart cart = write.cart();
+        synchronized (cart) {
+            CartItem line = cart.byId(write.id());
+            if (line != null) {
+                cart.linesByProduct.remove(line.getProduct().getId());
+                cart.dirty.remove(write.id());
+            }
+        }
+    }
+
+    private static void retry(PendingWrite write, boolean upsert) {
+        UserCart cart = write.cart();
+        synchronized (cart) {
+            // Only if the line was not removed (or re-added) since the flush read it
+            boolean present = cart.byId(write.id()) != null;
+            if (upsert && present) {
+                cart.dirty.add(write.id());
+            } else if (!upsert && !present) {
+                cart.deleted.add(write.id());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+}
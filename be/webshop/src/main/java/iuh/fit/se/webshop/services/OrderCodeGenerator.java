@@ -0,0 +1,55 @@
+package iuh.fit.se.webshop.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free, monotonic order codes that are unique without asking the database.
+ * Layout (50 bits): 32 bits of seconds since 2024-01-01 | 6 bits node id | 12 bits sequence,
+ * rendered as 10 upper-case base-36 characters to fit orders.code.
+ * When a node issues more than 4096 codes in one second the clock borrows the next second,
+ * so codes stay unique and increasing even under bursts or a clock step backwards.
+ */
+@Service
+public class OrderCodeGenerator {
+
+    private static final long EPOCH_SECONDS = 1704067200L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 6;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int CODE_LENGTH = 10;
+
+    private final long nodeId;
+    // (seconds << SEQUENCE_BITS) | sequence of the last issued code
+    private final AtomicLong last = new AtomicLong();
+
+    public OrderCodeGenerator(@Value("${orders.code.node-id:0}") long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("orders.code.node-id must be between 0 and " + MAX_NODE);
+        }
+        this.nodeId = nodeId;
+        // Start one second ahead so a restart within the same second cannot reissue a code
+        long startSecond = System.currentTimeMillis() / 1000 - EPOCH_SECONDS + 1;
+        this.last.set((startSecond << SEQUENCE_BITS) - 1);
+    }
+
+    public String next() {
+        long now = (System.currentTimeMillis() / 1000 - EPOCH_SECONDS) << SEQUENCE_BITS;
+        long prev;
+        long next;
+        do {
+            prev = last.get();
+            // Same or earlier second: bump the sequence; overflow simply carries into the seconds field
+            next = Math.max(now, prev + 1);
+        } while (!last.compareAndSet(prev, next));
+
+        long seconds = next >>> SEQUENCE_BITS;
+        long sequence = next & SEQUENCE_MASK;
+        long value = (seconds << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+        String code = Long.toString(value, 36).toUpperCase();
+        return "0".repeat(Math.max(0, CODE_LENGTH - code.length())) + code;
+    }
+}
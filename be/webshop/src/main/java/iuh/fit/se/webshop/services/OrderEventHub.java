@@ -0,0 +1,201 @@
+package iuh.fit.se.webshop.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.webshop.resources.OrderResource;
+import iuh.fit.se.webshop.security.AuthenticatedUser;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fans order events out to Server-Sent Event subscribers: customers get their own orders,
+ * admins get every order. Events are published once the order transaction commits and are
+ * serialized once, whatever the number of subscribers.
+ *
+ * Each subscriber is an SseSubscriber with a bounded queue (order-events.buffer-size)
+ * drained by a small pool of push threads. A subscriber whose queue fills up is dropped
+ * rather than allowed to hold memory or block publishers; its browser reconnects and
+ * reloads the list once.
+ */
+@Service
+public class OrderEventHub {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderEventHub.class);
+
+    public static final String ORDER_CREATED = "order:created";
+    public static final String ORDER_STATUS = "order:status";
+
+    /** Payload of order:status. */
+    public record StatusChange(Long id, String code, String status, String previousStatus) {
+    }
+
+    public static class CapacityException extends RuntimeException {
+        public CapacityException(String message) {
+            super(message);
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long streamTimeoutMillis;
+    private final Map<Long, Set<SseSubscriber>> byUser = new ConcurrentHashMap<>();
+    private final Set<SseSubscriber> admins = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final ExecutorService pusher;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder slowConsumersDropped = new LongAdder();
+
+    public OrderEventHub(ObjectMapper objectMapper,
+                         @Value("${order-events.buffer-size:32}") int bufferSize,
+                         @Value("${order-events.max-subscribers:10000}") int maxSubscribers,
+                         @Value("${order-events.push-threads:2}") int pushThreads,
+                         @Value("${order-events.stream-timeout-minutes:30}") long streamTimeoutMinutes) {
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.streamTimeoutMillis = TimeUnit.MINUTES.toMillis(streamTimeoutMinutes);
+        AtomicInteger counter = new AtomicInteger();
+        this.pusher = Executors.newFixedThreadPool(pushThreads, r -> {
+            Thread t = new Thread(r, "order-events-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** A stream of the user's own orders, or of all orders for an admin. */
+    public SseEmitter subscribe(AuthenticatedUser user) {
+        if (subscribers.incrementAndGet() > maxSubscribers) {
+            subscribers.decrementAndGet();
+            throw new CapacityException("Too many open order streams");
+        }
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        SseSubscriber subscriber = new SseSubscriber(emitter, bufferSize, pusher, delivered);
+        Long userId = user.isAdmin() ? null : user.id();
+        Set<SseSubscriber> group = join(userId, subscriber);
+        Runnable close = () -> remove(userId, group, subscriber);
+        emitter.onCompletion(close);
+        emitter.onTimeout(close);
+        emitter.onError(e -> close.run());
+        try {
+            // Commits the response headers so the browser sees the stream open right away
+            emitter.send(SseEmitter.event().comment("connected"));
+        } catch (IOException e) {
+            close.run();
+        }
+        return emitter;
+    }
+
+    private Set<SseSubscriber> join(Long userId, SseSubscriber subscriber) {
+        if (userId == null) {
+            admins.add(subscriber);
+            return admins;
+        }
+        while (true) {
+            Set<SseSubscriber> group = byUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet());
+            group.add(subscriber);
+            // The set may have been dropped as empty just before the add; join the new one then
+            if (byUser.get(userId) == group) {
+                return group;
+            }
+            group.remove(subscriber);
+        }
+    }
+
+    public void orderCreated(Long userId, OrderResource order) {
+        publishAfterCommit(userId, ORDER_CREATED, order);
+    }
+
+    public void statusChanged(Long userId, StatusChange change) {
+        publishAfterCommit(userId, ORDER_STATUS, change);
+    }
+
+    /** Subscribers must never see an order that was rolled back, so wait for the commit. */
+    private void publishAfterCommit(Long userId, String name, Object data) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(userId, name, data);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(userId, name, data);
+            }
+        });
+    }
+
+    private void publish(Long userId, String name, Object data) {
+        Set<SseSubscriber> own = userId == null ? null : byUser.get(userId);
+        if (admins.isEmpty() && (own == null || own.isEmpty())) {
+            return;
+        }
+        SseSubscriber.Event event;
+        try {
+            event = new SseSubscriber.Event(name, objectMapper.writeValueAsString(data));
+        } catch (JsonProcessingException e) {
+            log.warn("Could not serialize {} event: {}", name, e.getMessage());
+            return;
+        }
+        published.increment();
+        admins.forEach(subscriber -> offer(subscriber, event));
+        if (own != null) {
+            own.forEach(subscriber -> offer(subscriber, event));
+        }
+    }
+
+    private void offer(SseSubscriber subscriber, SseSubscriber.Event event) {
+        if (!subscriber.offer(event)) {
+            slowConsumersDropped.increment();
+        }
+    }
+
+    private void remove(Long userId, Set<SseSubscriber> group, SseSubscriber subscriber) {
+        if (!subscriber.close()) {
+            return;
+        }
+        group.remove(subscriber);
+        if (userId != null) {
+            byUser.computeIfPresent(userId, (id, set) -> set.isEmpty() ? null : set);
+        }
+        subscribers.decrementAndGet();
+    }
+
+    /** Keeps idle streams from being cut by proxies; also finds connections that died silently. */
+    @Scheduled(fixedDelayString = "${order-events.heartbeat-ms:25000}")
+    public void heartbeat() {
+        admins.forEach(subscriber -> offer(subscriber, SseSubscriber.HEARTBEAT));
+        byUser.values().forEach(group -> group.forEach(subscriber -> offer(subscriber, SseSubscriber.HEARTBEAT)));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", subscribers.get());
+        stats.put("adminSubscribers", admins.size());
+        stats.put("usersSubscribed", byUser.size());
+        stats.put("published", published.sum());
+        stats.put("delivered", delivered.sum());
+        stats.put("slowConsumersDropped", slowConsumersDropped.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        admins.forEach(subscriber -> subscriber.emitter.complete());
+        byUser.values().forEach(group -> group.forEach(subscriber -> subscriber.emitter.complete()));
+        pusher.shutdown();
+    }
+}
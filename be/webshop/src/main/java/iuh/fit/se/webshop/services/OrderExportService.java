@@ -0,0 +1,171 @@
+package iuh.fit.se.webshop.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Streams every order with its items straight from a forward-only JDBC cursor to the
+ * response. Rows arrive ordered by order id, so only the order currently being written
+ * is held in memory regardless of how many orders exist.
+ */
+@Service
+public class OrderExportService {
+
+    private static final String SQL = """
+            SELECT o.id, o.code, o.orderDate, o.status, o.totalAmount, o.shippingAddress, u.username,
+                   i.id AS item_id, i.product_id, p.name AS product_name, i.quantity, i.unitPrice
+            FROM orders o
+            LEFT JOIN users u ON u.id = o.user_id
+            LEFT JOIN order_items i ON i.order_id = o.id
+            LEFT JOIN products p ON p.id = i.product_id
+            ORDER BY o.id, i.id
+            """;
+
+    private static final String CSV_HEADER =
+            "order_id,code,order_date,status,total_amount,shipping_address,username,item_id,product_id,product_name,quantity,unit_price\n";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public OrderExportService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                              @Value("${orders.export.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /** One JSON object per order, items nested, newline separated. */
+    public void writeNdjson(OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(null);
+            stream(new RowCallbackHandler() {
+                private long currentOrderId = -1;
+
+                @Override
+                public void processRow(ResultSet rs) throws SQLException {
+                    try {
+                        long orderId = rs.getLong("id");
+                        if (orderId != currentOrderId) {
+                            if (currentOrderId != -1) {
+                                endOrder(json);
+                            }
+                            currentOrderId = orderId;
+                            json.writeStartObject();
+                            json.writeNumberField("id", orderId);
+                            json.writeStringField("code", rs.getString("code"));
+                            json.writeStringField("orderDate", iso(rs.getTimestamp("orderDate")));
+                            json.writeStringField("status", rs.getString("status"));
+                            writeNullableNumber(json, "totalAmount", rs, "totalAmount");
+                            json.writeStringField("shippingAddress", rs.getString("shippingAddress"));
+                            json.writeStringField("username", rs.getString("username"));
+                            json.writeArrayFieldStart("items");
+                        }
+                        if (rs.getObject("item_id") != null) {
+                            json.writeStartObject();
+                            json.writeNumberField("id", rs.getLong("item_id"));
+                            json.writeNumberField("productId", rs.getLong("product_id"));
+                            json.writeStringField("productName", rs.getString("product_name"));
+                            json.writeNumberField("quantity", rs.getInt("quantity"));
+                            writeNullableNumber(json, "unitPrice", rs, "unitPrice");
+                            json.writeEndObject();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                private void endOrder(JsonGenerator json) throws IOException {
+                    json.writeEndArray();
+                    json.writeEndObject();
+                    json.writeRaw('\n');
+                }
+            }, () -> {
+                // Close the last order once the cursor is exhausted
+                if (json.getOutputContext().inArray()) {
+                    json.writeEndArray();
+                    json.writeEndObject();
+                    json.writeRaw('\n');
+                }
+            });
+        }
+    }
+
+    /** One CSV line per order item (orders without items get one line with empty item columns). */
+    public void writeCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        stream(rs -> {
+            try {
+                writer.write(rs.getLong("id") + ","
+                        + csv(rs.getString("code")) + ","
+                        + csv(iso(rs.getTimestamp("orderDate"))) + ","
+                        + csv(rs.getString("status")) + ","
+                        + csv(rs.getString("totalAmount")) + ","
+                        + csv(rs.getString("shippingAddress")) + ","
+                        + csv(rs.getString("username")) + ","
+                        + csv(rs.getString("item_id")) + ","
+                        + csv(rs.getString("product_id")) + ","
+                        + csv(rs.getString("product_name")) + ","
+                        + csv(rs.getString("quantity")) + ","
+                        + csv(rs.getString("unitPrice")) + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, () -> { });
+        writer.flush();
+    }
+
+    private void stream(RowCallbackHandler handler, IoAction onComplete) throws IOException {
+        try {
+            jdbcTemplate.query(con -> {
+                var ps = con.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                return ps;
+            }, handler);
+            onComplete.run();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeNullableNumber(JsonGenerator json, String field, ResultSet rs, String column)
+            throws SQLException, IOException {
+        double value = rs.getDouble(column);
+        if (rs.wasNull()) {
+            json.writeNullField(field);
+        } else {
+            json.writeNumberField(field, value);
+        }
+    }
+
+    private static String iso(Timestamp ts) {
+        return ts == null ? null : ts.toInstant().toString();
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
+    @FunctionalInterface
+    private interface IoAction {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,145 @@
+package iuh.fit.se.webshop.services;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs BCrypt on a dedicated pool sized to the CPU count with a bounded queue, so a login
+ * storm cannot take every Tomcat worker. When the queue is full the returned future fails
+ * with {@link OverloadedException}, which the API turns into 503 + Retry-After.
+ *
+ * What callers do with a hash afterwards (saving the user) blocks on the database, so it
+ * runs on {@link #writeExecutor()} rather than in a continuation on the hashing threads.
+ */
+@Service
+public class PasswordHashingService {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final ExecutorService writer;
+    private final int retryAfterSeconds;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  @Value("${security.hashing.threads:0}") int threads,
+                                  @Value("${security.hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${security.hashing.retry-after-seconds:2}") int retryAfterSeconds,
+                                  @Value("${security.hashing.writer-threads:4}") int writerThreads) {
+        this.passwordEncoder = passwordEncoder;
+        this.retryAfterSeconds = retryAfterSeconds;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        // Unbounded queue, but each task follows a hash the bounded pool accepted
+        AtomicInteger writerCounter = new AtomicInteger();
+        this.writer = Executors.newFixedThreadPool(writerThreads, r -> {
+            Thread t = new Thread(r, "password-write-" + writerCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static class OverloadedException extends RuntimeException {
+        private final int retryAfterSeconds;
+
+        public OverloadedException(int retryAfterSeconds) {
+            super("Password hashing is overloaded");
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /** True when new work would be rejected; lets callers fail fast before touching the database. */
+    public boolean isSaturated() {
+        return executor.getQueue().remainingCapacity() == 0;
+    }
+
+    public OverloadedException overloaded() {
+        rejected.increment();
+        return new OverloadedException(retryAfterSeconds);
+    }
+
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    public CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword) {
+        return submit(() -> encodedPassword != null && passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * True when the stored hash was made with a lower cost than the one configured now.
+     * BCrypt's upgradeEncoding never asks for a rehash to a lower cost.
+     */
+    public boolean needsRehash(String encodedPassword) {
+        return encodedPassword != null && passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /** For the database work that follows a hash, e.g. thenApplyAsync(saveUser, writeExecutor()). */
+    public Executor writeExecutor() {
+        return writer;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                try {
+                    return work.get();
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    completed.increment();
+                    totalNanos.add(elapsed);
+                    maxNanos.accumulateAndGet(elapsed, Math::max);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(overloaded());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long done = completed.sum();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("poolSize", executor.getPoolSize());
+        m.put("active", executor.getActiveCount());
+        m.put("queueDepth", executor.getQueue().size());
+        m.put("queueRemaining", executor.getQueue().remainingCapacity());
+        m.put("completed", done);
+        m.put("rejected", rejected.sum());
+        m.put("avgHashMillis", done == 0 ? 0.0 : totalNanos.sum() / (double) done / 1_000_000.0);
+        m.put("maxHashMillis", maxNanos.get() / 1_000_000.0);
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        writer.shutdown();
+    }
+
+}
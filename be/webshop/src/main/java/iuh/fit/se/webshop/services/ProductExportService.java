@@ -0,0 +1,105 @@
+package iuh.fit.se.webshop.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+
+/**
+ * Streams the whole catalog from a forward-only JDBC cursor to the response, one product
+ * at a time. The columns are the ones ProductImportService reads (id is informational),
+ * so an export can be edited and imported elsewhere.
+ */
+@Service
+public class ProductExportService {
+
+    private static final String SQL = """
+            SELECT p.id, p.name, p.price, c.name AS category, p.image, p.description
+            FROM products p
+            LEFT JOIN categories c ON c.id = p.category_id
+            ORDER BY p.id
+            """;
+
+    private static final String CSV_HEADER = "id,name,price,category,image,description\n";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public ProductExportService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                                @Value("${products.export.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /** One JSON object per product, newline separated. */
+    public void writeNdjson(OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(null);
+            stream(rs -> {
+                try {
+                    json.writeStartObject();
+                    json.writeNumberField("id", rs.getLong("id"));
+                    json.writeStringField("name", rs.getString("name"));
+                    json.writeNumberField("price", rs.getDouble("price"));
+                    json.writeStringField("category", rs.getString("category"));
+                    json.writeStringField("image", rs.getString("image"));
+                    json.writeStringField("description", rs.getString("description"));
+                    json.writeEndObject();
+                    json.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    /** A header line, then one line per product. */
+    public void writeCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        stream(rs -> {
+            try {
+                writer.write(rs.getLong("id") + ","
+                        + csv(rs.getString("name")) + ","
+                        + csv(rs.getString("price")) + ","
+                        + csv(rs.getString("category")) + ","
+                        + csv(rs.getString("image")) + ","
+                        + csv(rs.getString("description")) + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+
+    private void stream(RowCallbackHandler handler) throws IOException {
+        try {
+            jdbcTemplate.query(con -> {
+                var ps = con.prepareStatement(SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                return ps;
+            }, handler);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
@@ -0,0 +1,413 @@
+package iuh.fit.se.webshop.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.webshop.config.SecondLevelCacheConfig;
+import iuh.fit.se.webshop.models.Category;
+import iuh.fit.se.webshop.models.Product;
+import iuh.fit.se.webshop.repositories.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Adds products in bulk from a CSV (header line with name, price and optionally category,
+ * image, description, in any order) or NDJSON (one object per line with the same fields)
+ * stream. The body is parsed as it arrives and valid rows are inserted in JDBC batches of
+ * products.import.batch-size, one transaction each, so memory stays flat whatever the size
+ * of the file. Categories are resolved by name from an in-memory map.
+ *
+ * A bad row is reported with its number and the reason and the run goes on. If a batch is
+ * rejected by the database, its rows are retried one by one to find the culprits.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+
+    private static final String INSERT =
+            "INSERT INTO products (name, price, category_id, image, description) VALUES (?, ?, ?, ?, ?)";
+    private static final int MAX_NAME = 255;
+    private static final int MAX_IMAGE = 255;
+    private static final int MAX_DESCRIPTION = 1000;
+
+    /** A validated row; category is null when the row names none. */
+    private record Row(long number, String name, double price, Category category, String image, String description) {
+    }
+
+    /** Counts and per-row errors of one run. */
+    private static final class Report {
+        final boolean dryRun;
+        final int maxErrors;
+        final long started = System.currentTimeMillis();
+        final List<Map<String, Object>> errors = new ArrayList<>();
+        long rows;
+        long inserted;
+        long failed;
+        int categoriesCreated;
+
+        Report(boolean dryRun, int maxErrors) {
+            this.dryRun = dryRun;
+            this.maxErrors = maxErrors;
+        }
+
+        void error(long row, String message) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(Map.of("row", row, "error", message));
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("dryRun", dryRun);
+            m.put("rows", rows);
+            m.put(dryRun ? "valid" : "inserted", dryRun ? rows - failed : inserted);
+            m.put("failed", failed);
+            m.put("categoriesCreated", categoriesCreated);
+            m.put("errors", errors);
+            m.put("errorsTruncated", failed > errors.size());
+            m.put("durationMs", System.currentTimeMillis() - started);
+            return m;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final CatalogCache catalogCache;
+    private final ProductRepository productRepository;
+    private final ProductSearchIndex searchIndex;
+    private final EntityManagerFactory entityManagerFactory;
+    private final int batchSize;
+    private final int maxErrors;
+
+    public ProductImportService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                ObjectMapper objectMapper, CatalogCache catalogCache,
+                                ProductRepository productRepository, ProductSearchIndex searchIndex, EntityManagerFactory entityManagerFactory,
+                                @Value("${products.import.batch-size:500}") int batchSize,
+                                @Value("${products.import.max-errors:1000}") int maxErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.catalogCache = catalogCache;
+        this.productRepository = productRepository;
+        this.searchIndex = searchIndex;
+        this.entityManagerFactory = entityManagerFactory;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Imports the stream and returns the report. With createCategories an unknown category
+     * name is created, otherwise the row is rejected; with dryRun nothing is written.
+     */
+    public Map<String, Object> importCsv(InputStream in, boolean createCategories, boolean dryRun) throws IOException {
+        try (Run run = new Run(createCategories, dryRun)) {
+            CsvReader csv = new CsvReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            List<String> header = csv.next();
+            if (header == null) {
+                throw new IllegalArgumentException("Empty file");
+            }
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                // Excel prepends a byte order mark to UTF-8 files
+                columns.put(header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT), i);
+            }
+            if (!columns.containsKey("name") || !columns.containsKey("price")) {
+                throw new IllegalArgumentException("Header must contain name and price columns");
+            }
+            long number = 0;
+            while (true) {
+                List<String> fields;
+                try {
+                    fields = csv.next();
+                } catch (IllegalArgumentException e) {
+                    // An unterminated quote swallows the rest of the file; nothing after it can be read
+                    run.report.rows++;
+                    run.report.error(number + 1, e.getMessage());
+                    break;
+                }
+                if (fields == null) {
+                    break;
+                }
+                number++;
+                if (fields.size() == 1 && fields.get(0).isBlank()) {
+                    continue;
+                }
+                run.accept(number, column(fields, columns, "name"), column(fields, columns, "price"),
+                        column(fields, columns, "category"), column(fields, columns, "image"),
+                        column(fields, columns, "description"));
+            }
+            return run.finish();
+        }
+    }
+
+    /** Same as {@link #importCsv} for one JSON object per line. */
+    public Map<String, Object> importNdjson(InputStream in, boolean createCategories, boolean dryRun) throws IOException {
+        try (Run run = new Run(createCategories, dryRun)) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            long number = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                JsonNode node;
+                try {
+                    node = objectMapper.readTree(line);
+                } catch (IOException e) {
+                    run.report.rows++;
+                    run.report.error(number, "Invalid JSON");
+                    continue;
+                }
+                if (!node.isObject()) {
+                    run.report.rows++;
+                    run.report.error(number, "Expected a JSON object");
+                    continue;
+                }
+                run.accept(number, text(node, "name"), text(node, "price"), text(node, "category"),
+                        text(node, "image"), text(node, "description"));
+            }
+            return run.finish();
+        }
+    }
+
+    /**
+     * State of one import: the category map, the pending batch and the report. Closing it
+     * refreshes the catalog caches whenever rows were written, even if the import failed
+     * part way through.
+     */
+    private final class Run implements AutoCloseable {
+        final boolean createCategories;
+        final boolean dryRun;
+        final Report report;
+        final Map<String, Category> categories = new HashMap<>();
+        final List<Row> batch = new ArrayList<>(batchSize);
+        // Highest product id before the first insert; the imported rows all come after it
+        Long lastIdBefore;
+
+        Run(boolean createCategories, boolean dryRun) {
+            this.createCategories = createCategories;
+            this.dryRun = dryRun;
+            this.report = new Report(dryRun, maxErrors);
+            for (Category category : catalogCache.findAllCategories()) {
+                categories.put(key(category.getName()), category);
+            }
+        }
+
+        void accept(long number, String name, String price, String category, String image, String description) {
+            report.rows++;
+            Row row;
+            try {
+                row = validate(number, name, price, category, image, description);
+            } catch (IllegalArgumentException e) {
+                report.error(number, e.getMessage());
+                return;
+            }
+            if (dryRun) {
+                return;
+            }
+            batch.add(row);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        Row validate(long number, String name, String price, String category, String image, String description) {
+            if (name == null || name.isBlank()) {
+                throw new IllegalArgumentException("name is required");
+            }
+            name = name.strip();
+            if (name.length() > MAX_NAME) {
+                throw new IllegalArgumentException("name must be at most " + MAX_NAME + " characters");
+            }
+            if (price == null || price.isBlank()) {
+                throw new IllegalArgumentException("price is required");
+            }
+            double value;
+            try {
+                value = Double.parseDouble(price.strip());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("price is not a number: " + price);
+            }
+            if (!Double.isFinite(value) || value < 0) {
+                throw new IllegalArgumentException("price must be a non-negative number");
+            }
+            image = blankToNull(image);
+            if (image != null && image.length() > MAX_IMAGE) {
+                throw new IllegalArgumentException("image must be at most " + MAX_IMAGE + " characters");
+            }
+            description = blankToNull(description);
+            if (description != null && description.length() > MAX_DESCRIPTION) {
+                throw new IllegalArgumentException("description must be at most " + MAX_DESCRIPTION + " characters");
+            }
+            return new Row(number, name, value, category(blankToNull(category)), image, description);
+        }
+
+        Category category(String name) {
+            if (name == null) {
+                return null;
+            }
+            Category category = categories.get(key(name));
+            if (category != null) {
+                return category;
+            }
+            if (!createCategories) {
+                throw new IllegalArgumentException("Unknown category: " + name);
+            }
+            // A dry run only needs to know the name would be accepted
+            category = dryRun ? new Category(null, name, null) : catalogCache.saveCategory(new Category(null, name, null));
+            categories.put(key(name), category);
+            report.categoriesCreated++;
+            return category;
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (lastIdBefore == null) {
+                lastIdBefore = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM products", Long.class);
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT, args(batch)));
+                report.inserted += batch.size();
+            } catch (DataAccessException e) {
+                // The batch was rolled back as a whole; insert its rows one by one to report the bad ones
+                log.debug("Product import batch failed, retrying row by row: {}", e.getMessage());
+                for (Row row : batch) {
+                    try {
+                        jdbcTemplate.update(INSERT, args(List.of(row)).get(0));
+                        report.inserted++;
+                    } catch (DataAccessException rowError) {
+                        report.error(row.number(), "Rejected by the database: " + rootMessage(rowError));
+                    }
+                }
+            }
+            batch.clear();
+        }
+
+        Map<String, Object> finish() {
+            flush();
+            return report.toMap();
+        }
+
+        @Override
+        public void close() {
+            if (report.inserted > 0) {
+                productsChanged(lastIdBefore);
+            }
+        }
+    }
+
+    /**
+     * The rows were written around Hibernate and the repositories, so every cache that
+     * might hold the old catalog is dropped explicitly. Only the new rows need indexing, so
+     * they are read back in id order, a batch at a time, instead of rebuilding the index.
+     * Rows another admin added meanwhile may be among them; indexing them again is harmless.
+     */
+    private void productsChanged(long lastIdBefore) {
+        catalogCache.productsImported();
+        entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class)
+                .evictQueryRegion(SecondLevelCacheConfig.PRODUCT_QUERIES);
+        long afterId = lastIdBefore;
+        List<Product> page;
+        while (!(page = productRepository.findAfterId(afterId, PageRequest.of(0, batchSize))).isEmpty()) {
+            page.forEach(searchIndex::index);
+            afterId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private static List<Object[]> args(List<Row> rows) {
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            args.add(new Object[]{row.name(), row.price(),
+                    row.category() == null ? null : row.category().getId(), row.image(), row.description()});
+        }
+        return args;
+    }
+
+    private static String column(List<String> fields, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        return index == null || index >= fields.size() ? null : fields.get(index);
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static String key(String categoryName) {
+        return categoryName.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.strip();
+    }
+
+    private static String rootMessage(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e.getMessage();
+    }
+
+    /** RFC 4180 records: quoted fields may hold commas, doubled quotes and line breaks. */
+    static final class CsvReader {
+        private final Reader in;
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        /** The next record's fields, or null at the end of the input. */
+        List<String> next() throws IOException {
+            int c = in.read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IllegalArgumentException("Unterminated quoted field");
+                    }
+                    if (c == '"') {
+                        int next = in.read();
+                        if (next != '"') {
+                            quoted = false;
+                            c = next;
+                            continue;
+                        }
+                    }
+                    field.append((char) c);
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == -1) {
+                    fields.add(field.toString());
+                    return fields;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+        }
+    }
+}
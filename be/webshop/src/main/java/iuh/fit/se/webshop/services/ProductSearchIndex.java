@@ -0,0 +1,289 @@
+package iuh.fit.se.webshop.services;
+
+import iuh.fit.se.webshop.models.Product;
+import iuh.fit.se.webshop.repositories.ProductRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-process inverted index over Product.name and Product.description.
+ * Terms are folded to ASCII lowercase ("Áo thun" -> "ao thun", "đ" -> "d"), the last query
+ * token is matched as a prefix for type-ahead, and every query token must match (AND).
+ * The index is built once at startup and kept current by ProductController writes.
+ *
+ * A rebuild reads the catalog and fills a new generation without holding the lock, so
+ * searches go on meanwhile; index and remove calls made during the read are journaled and
+ * replayed onto the new generation before it is swapped in, so none of them is lost.
+ */
+@Service
+public class ProductSearchIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int EXACT_BONUS = 2;
+    private static final int MAX_PREFIX_EXPANSION = 64;
+
+    /** The indexed documents; the live one is only touched under the lock. */
+    private static final class Generation {
+        // term -> (productId -> weight); sorted so a prefix is a contiguous sub-map
+        final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+        final Map<Long, Product> documents = new HashMap<>();
+        final Map<Long, Set<String>> documentTerms = new HashMap<>();
+
+        void add(Product product) {
+            if (product.getId() == null) {
+                return;
+            }
+            Map<String, Integer> weights = new HashMap<>();
+            for (String t : tokenize(product.getName())) {
+                weights.merge(t, NAME_WEIGHT, Integer::sum);
+            }
+            for (String t : tokenize(product.getDescription())) {
+                weights.merge(t, DESCRIPTION_WEIGHT, Integer::sum);
+            }
+            weights.forEach((term, w) -> postings.computeIfAbsent(term, k -> new HashMap<>()).put(product.getId(), w));
+            documents.put(product.getId(), product);
+            documentTerms.put(product.getId(), weights.keySet());
+        }
+
+        void remove(Long productId) {
+            documents.remove(productId);
+            Set<String> terms = documentTerms.remove(productId);
+            if (terms == null) {
+                return;
+            }
+            for (String term : terms) {
+                Map<Long, Integer> ids = postings.get(term);
+                if (ids != null) {
+                    ids.remove(productId);
+                    if (ids.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+
+        void replace(Long productId, Product product) {
+            remove(productId);
+            if (product != null) {
+                add(product);
+            }
+        }
+    }
+
+    /** An index or remove call; product is null for a removal. */
+    private record Change(Long productId, Product product) {
+    }
+
+    private final ProductRepository productRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // One rebuild at a time, so there is a single journal to replay
+    private final Object rebuildLock = new Object();
+
+    private Generation current = new Generation();
+    // Non-null while a rebuild reads the catalog; guarded by the lock
+    private List<Change> changesDuringRebuild;
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            List<Change> journal = new ArrayList<>();
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = journal;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            try {
+                // Started after the journal, so a write is either in what findAll reads or in the journal
+                Generation fresh = new Generation();
+                for (Product p : productRepository.findAll()) {
+                    fresh.add(p);
+                }
+                lock.writeLock().lock();
+                try {
+                    for (Change change : journal) {
+                        fresh.replace(change.productId(), change.product());
+                    }
+                    current = fresh;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                lock.writeLock().lock();
+                try {
+                    changesDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    public void index(Product product) {
+        apply(product.getId(), product);
+    }
+
+    public void remove(Long productId) {
+        apply(productId, null);
+    }
+
+    private void apply(Long productId, Product product) {
+        lock.writeLock().lock();
+        try {
+            current.replace(productId, product);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(new Change(productId, product));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Product> search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+        // A trailing space means the user finished the last word, so no prefix expansion
+        boolean prefixLast = !query.endsWith(" ");
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Integer> scores = null;
+            for (int i = 0; i < tokens.size(); i++) {
+                Map<Long, Integer> tokenScores = match(tokens.get(i), prefixLast && i == tokens.size() - 1, scores);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    Map<Long, Integer> merged = new HashMap<>();
+                    for (Map.Entry<Long, Integer> e : scores.entrySet()) {
+                        Integer s = tokenScores.get(e.getKey());
+                        if (s != null) {
+                            merged.put(e.getKey(), e.getValue() + s);
+                        }
+                    }
+                    scores = merged;
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+            return topK(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return current.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Scores of the products matching one token; candidates, when known, are the products earlier tokens matched. */
+    private Map<Long, Integer> match(String token, boolean prefix, Map<Long, Integer> candidates) {
+        Map<Long, Integer> result = new HashMap<>();
+        Map<Long, Integer> exact = current.postings.get(token);
+        if (exact != null) {
+            exact.forEach((id, w) -> result.merge(id, w + EXACT_BONUS, Math::max));
+        }
+        if (prefix) {
+            for (Map<Long, Integer> ids : completions(token, candidates == null)) {
+                if (candidates != null && candidates.size() < ids.size()) {
+                    for (Long id : candidates.keySet()) {
+                        Integer w = ids.get(id);
+                        if (w != null) {
+                            result.merge(id, w, Math::max);
+                        }
+                    }
+                } else {
+                    ids.forEach((id, w) -> result.merge(id, w, Math::max));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Postings of the terms that extend the prefix. After earlier tokens every completion is
+     * used, since the work is bounded by their matches. A prefix on its own ("a") can extend
+     * to thousands of terms, so then only the MAX_PREFIX_EXPANSION terms found in the most
+     * products are merged, ties going to the shorter term, rather than the first ones in
+     * alphabetical order.
+     */
+    private Collection<Map<Long, Integer>> completions(String prefix, boolean capped) {
+        SortedMap<String, Map<Long, Integer>> range = current.postings.subMap(prefix, false, prefix + Character.MAX_VALUE, false);
+        if (!capped) {
+            return range.values();
+        }
+        Comparator<Map.Entry<String, Map<Long, Integer>>> byReach = Comparator
+                .<Map.Entry<String, Map<Long, Integer>>>comparingInt(e -> e.getValue().size())
+                .thenComparing(e -> -e.getKey().length());
+        PriorityQueue<Map.Entry<String, Map<Long, Integer>>> heap = new PriorityQueue<>(MAX_PREFIX_EXPANSION + 1, byReach);
+        for (Map.Entry<String, Map<Long, Integer>> e : range.entrySet()) {
+            heap.offer(e);
+            if (heap.size() > MAX_PREFIX_EXPANSION) {
+                heap.poll();
+            }
+        }
+        List<Map<Long, Integer>> top = new ArrayList<>(heap.size());
+        heap.forEach(e -> top.add(e.getValue()));
+        return top;
+    }
+
+    private List<Product> topK(Map<Long, Integer> scores, int limit) {
+        Map<Long, Product> documents = current.documents;
+        Comparator<Map.Entry<Long, Integer>> byRank = Map.Entry.<Long, Integer>comparingByValue()
+                .thenComparing(e -> -documents.get(e.getKey()).getName().length())
+                .thenComparing(e -> -e.getKey());
+        PriorityQueue<Map.Entry<Long, Integer>> heap = new PriorityQueue<>(limit + 1, byRank);
+        for (Map.Entry<Long, Integer> e : scores.entrySet()) {
+            heap.offer(e);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<Product> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            result.add(documents.get(heap.poll().getKey()));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    static String fold(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String t : fold(text).split("[^\\p{L}\\p{N}]+")) {
+            if (!t.isEmpty()) {
+                tokens.add(t);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,90 @@
+package iuh.fit.se.webshop.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Counts the SQL statements Hibernate prepares while a request is being handled. Registered
+ * as the session factory's StatementInspector; QueryBudgetFilter opens and closes the count
+ * around each request. Counts land in the "http.server.requests.queries" summary per route,
+ * and a request over the budget is logged (or, with fail-on-exceed, aborted), so an N+1
+ * loop shows up as soon as the endpoint is hit.
+ */
+@Service
+public class QueryBudget implements StatementInspector {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryBudget.class);
+
+    // Only set while a request is in flight; statements from background threads are not counted
+    private static final ThreadLocal<int[]> CURRENT = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final int maxPerRequest;
+    private final boolean failOnExceed;
+
+    public QueryBudget(MeterRegistry registry,
+                       @Value("${query-budget.enabled:true}") boolean enabled,
+                       @Value("${query-budget.max-per-request:20}") int maxPerRequest,
+                       @Value("${query-budget.fail-on-exceed:false}") boolean failOnExceed) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.maxPerRequest = maxPerRequest;
+        this.failOnExceed = failOnExceed;
+    }
+
+    public static class ExceededException extends RuntimeException {
+        public ExceededException(int budget) {
+            super("Request exceeded its query budget of " + budget + " statements");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = CURRENT.get();
+        if (count != null && ++count[0] > maxPerRequest && failOnExceed) {
+            throw new ExceededException(maxPerRequest);
+        }
+        return sql;
+    }
+
+    public void begin() {
+        CURRENT.set(new int[1]);
+    }
+
+    /** Ends the count for this thread and records it against the matched route. */
+    public int end(String method, String route) {
+        int[] count = CURRENT.get();
+        CURRENT.remove();
+        if (count == null) {
+            return 0;
+        }
+        DistributionSummary.builder("http.server.requests.queries")
+                .description("SQL statements per request")
+                .baseUnit("statements")
+                .tag("method", method)
+                .tag("uri", route)
+                .register(registry)
+                .record(count[0]);
+        if (count[0] > maxPerRequest) {
+            Counter.builder("http.server.requests.queries.over-budget")
+                    .tag("method", method)
+                    .tag("uri", route)
+                    .register(registry)
+                    .increment();
+            log.warn("{} {} ran {} SQL statements (budget {}); look for lazy loads in a loop",
+                    method, route, count[0], maxPerRequest);
+        }
+        return count[0];
+    }
+}
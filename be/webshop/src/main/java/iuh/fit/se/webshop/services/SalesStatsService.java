@@ -0,0 +1,135 @@
+package iuh.fit.se.webshop.services;
+
+import iuh.fit.se.webshop.models.Order;
+import iuh.fit.se.webshop.models.OrderItem;
+import iuh.fit.se.webshop.models.SalesRollup;
+import iuh.fit.se.webshop.repositories.OrderRepository;
+import iuh.fit.se.webshop.repositories.SalesRollupRepository;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+/**
+ * Keeps the sales_rollup table in step with orders and answers dashboard queries from it.
+ * Callers run inside the transaction that writes the order, so rollups and orders commit together.
+ */
+@Service
+public class SalesStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(SalesStatsService.class);
+    private static final String PAID = "Paid";
+
+    private final SalesRollupRepository salesRollupRepository;
+    private final OrderRepository orderRepository;
+
+    public SalesStatsService(SalesRollupRepository salesRollupRepository, OrderRepository orderRepository) {
+        this.salesRollupRepository = salesRollupRepository;
+        this.orderRepository = orderRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        if (salesRollupRepository.count() == 0 && orderRepository.count() > 0) {
+            salesRollupRepository.rebuildFromOrders();
+            log.info("Sales rollup backfilled from orders table");
+        }
+    }
+
+    public void recordNewOrder(Order order) {
+        salesRollupRepository.add(dayOf(order), order.getStatus(), amount(order), 1, units(order));
+    }
+
+    public void recordStatusChange(Order order, String oldStatus, String newStatus) {
+        if (Objects.equals(oldStatus, newStatus)) {
+            return;
+        }
+        LocalDate day = dayOf(order);
+        double amount = amount(order);
+        long units = units(order);
+        salesRollupRepository.add(day, oldStatus, -amount, -1, -units);
+        salesRollupRepository.add(day, newStatus, amount, 1, units);
+    }
+
+    /** Totals for the inclusive day range; null bounds mean open-ended. */
+    public Map<String, Object> summarize(LocalDate from, LocalDate to) {
+        List<SalesRollup> rows = salesRollupRepository.findBySalesDateBetweenOrderBySalesDate(
+                from == null ? LocalDate.of(1970, 1, 1) : from,
+                to == null ? LocalDate.of(9999, 12, 31) : to);
+
+        double paidRevenue = 0;
+        long totalOrders = 0;
+        long pendingOrders = 0;
+        long units = 0;
+        Map<String, Map<String, Object>> byStatus = new TreeMap<>();
+        Map<LocalDate, Map<String, Object>> byDay = new TreeMap<>();
+
+        for (SalesRollup r : rows) {
+            totalOrders += r.getOrderCount();
+            units += r.getUnits();
+            if (PAID.equals(r.getStatus())) {
+                paidRevenue += r.getRevenue();
+            } else {
+                pendingOrders += r.getOrderCount();
+            }
+            accumulate(byStatus.computeIfAbsent(r.getStatus(), s -> bucket()), r);
+            accumulate(byDay.computeIfAbsent(r.getSalesDate(), d -> bucket()), r);
+        }
+
+        List<Map<String, Object>> daily = new ArrayList<>(byDay.size());
+        byDay.forEach((day, b) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("date", day.toString());
+            entry.putAll(b);
+            daily.add(entry);
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("startDate", from == null ? null : from.toString());
+        result.put("endDate", to == null ? null : to.toString());
+        result.put("totalRevenue", paidRevenue);
+        result.put("totalOrders", totalOrders);
+        result.put("pendingOrders", pendingOrders);
+        result.put("units", units);
+        result.put("byStatus", byStatus);
+        result.put("daily", daily);
+        return result;
+    }
+
+    private static Map<String, Object> bucket() {
+        Map<String, Object> b = new LinkedHashMap<>();
+        b.put("revenue", 0.0);
+        b.put("orders", 0L);
+        b.put("units", 0L);
+        return b;
+    }
+
+    private static void accumulate(Map<String, Object> b, SalesRollup r) {
+        b.put("revenue", (Double) b.get("revenue") + r.getRevenue());
+        b.put("orders", (Long) b.get("orders") + r.getOrderCount());
+        b.put("units", (Long) b.get("units") + r.getUnits());
+    }
+
+    private static LocalDate dayOf(Order order) {
+        return order.getOrderDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static double amount(Order order) {
+        return order.getTotalAmount() == null ? 0 : order.getTotalAmount();
+    }
+
+    private static long units(Order order) {
+        long units = 0;
+        for (OrderItem item : order.getItems()) {
+            units += item.getQuantity();
+        }
+        return units;
+    }
+}
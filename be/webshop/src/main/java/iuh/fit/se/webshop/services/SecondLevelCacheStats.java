@@ -0,0 +1,51 @@
+package iuh.fit.se.webshop.services;
+
+import iuh.fit.se.webshop.config.SecondLevelCacheConfig;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Hit, miss and put counts per second-level cache region, from Hibernate's statistics. */
+@Service
+public class SecondLevelCacheStats {
+
+    private final Statistics statistics;
+
+    public SecondLevelCacheStats(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String region : SecondLevelCacheConfig.REGIONS.keySet()) {
+            CacheRegionStatistics s = statistics.getCacheRegionStatistics(region);
+            if (s == null) {
+                continue;
+            }
+            long requests = s.getHitCount() + s.getMissCount();
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("hits", s.getHitCount());
+            r.put("misses", s.getMissCount());
+            r.put("puts", s.getPutCount());
+            r.put("hitRate", requests == 0 ? 0.0 : (double) s.getHitCount() / requests);
+            // JCache cannot count entries; Hibernate reports Long.MIN_VALUE then
+            if (s.getElementCountInMemory() >= 0) {
+                r.put("entries", s.getElementCountInMemory());
+            }
+            regions.put(region, r);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        result.put("secondLevelCacheHits", statistics.getSecondLevelCacheHitCount());
+        result.put("secondLevelCacheMisses", statistics.getSecondLevelCacheMissCount());
+        result.put("queryCacheHits", statistics.getQueryCacheHitCount());
+        result.put("queryCacheMisses", statistics.getQueryCacheMissCount());
+        result.put("regions", regions);
+        return result;
+    }
+}
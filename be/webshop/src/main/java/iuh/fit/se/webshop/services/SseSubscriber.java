@@ -0,0 +1,91 @@
+package iuh.fit.se.webshop.services;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One Server-Sent Events client with a bounded queue of serialized events, drained on a
+ * shared push pool, one drain at a time per subscriber so events stay in order. A blocking
+ * write to a stalled client therefore holds one push thread for that client only. A
+ * subscriber whose queue fills up is too slow to keep up and is completed rather than
+ * allowed to hold memory or block publishers; its browser reconnects.
+ */
+final class SseSubscriber {
+
+    /** A serialized event; a null name is a heartbeat comment. */
+    record Event(String name, String json) {
+    }
+
+    static final Event HEARTBEAT = new Event(null, null);
+
+    final SseEmitter emitter;
+    private final BlockingQueue<Event> queue;
+    private final Executor pusher;
+    private final LongAdder delivered;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicBoolean dropped = new AtomicBoolean();
+
+    SseSubscriber(SseEmitter emitter, int bufferSize, Executor pusher, LongAdder delivered) {
+        this.emitter = emitter;
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+        this.pusher = pusher;
+        this.delivered = delivered;
+    }
+
+    /** Queues the event; false only when this call found the queue full and dropped the subscriber. */
+    boolean offer(Event event) {
+        if (closed.get() || dropped.get()) {
+            return true;
+        }
+        if (!queue.offer(event)) {
+            if (dropped.compareAndSet(false, true)) {
+                emitter.complete();
+                return false;
+            }
+            return true;
+        }
+        if (draining.compareAndSet(false, true)) {
+            pusher.execute(this::drain);
+        }
+        return true;
+    }
+
+    /** Marks the subscriber closed; true for the call that closed it. */
+    boolean close() {
+        return closed.compareAndSet(false, true);
+    }
+
+    private void drain() {
+        while (true) {
+            Event event;
+            while ((event = queue.poll()) != null) {
+                if (closed.get()) {
+                    return;
+                }
+                try {
+                    emitter.send(event.name() == null
+                            ? SseEmitter.event().comment("")
+                            : SseEmitter.event().name(event.name()).data(event.json(), MediaType.APPLICATION_JSON));
+                    delivered.increment();
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away; completing runs the callback that unsubscribes it
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+            draining.set(false);
+            // An event offered after the last poll but before the flag was cleared needs a drain too
+            if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package iuh.fit.se.webshop.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import iuh.fit.se.webshop.models.User;
+import iuh.fit.se.webshop.repositories.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Short-lived cache of full User rows for the few places that need more than
+ * the id/username/role carried by the JWT. Entries expire quickly so role or
+ * profile changes made elsewhere are picked up; local writes evict immediately.
+ */
+@Service
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final Cache<Long, Optional<User>> usersById;
+
+    public UserCache(UserRepository userRepository,
+                     @Value("${user.cache.ttl-seconds:30}") long ttlSeconds,
+                     @Value("${user.cache.max-users:10000}") long maxUsers) {
+        this.userRepository = userRepository;
+        this.usersById = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(maxUsers)
+                .build();
+    }
+
+    public Optional<User> findById(Long id) {
+        return usersById.get(id, userRepository::findById);
+    }
+
+    public User save(User user) {
+        User saved = userRepository.save(user);
+        usersById.invalidate(saved.getId());
+        return saved;
+    }
+
+    public void evict(Long id) {
+        usersById.invalidate(id);
+    }
+}
@@ -0,0 +1,38 @@
+package iuh.fit.se.webshop.utils;
+
+import iuh.fit.se.webshop.models.Product;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for the paginated product listing.
+ * Encodes the sort key of the last row returned ("price:id" or "id") as URL-safe Base64.
+ */
+public record ProductCursor(Double price, Long id) {
+    
+    public static ProductCursor after(Product product) {
+        return new ProductCursor(product.getPrice(), product.getId());
+    }
+    
+    public String encode() {
+        String raw = price == null ? String.valueOf(id) : price + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    public static ProductCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            if (sep < 0) {
+                return new ProductCursor(null, Long.parseLong(raw));
+            }
+            return new ProductCursor(Double.parseDouble(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
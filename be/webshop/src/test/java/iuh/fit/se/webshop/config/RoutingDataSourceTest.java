@@ -0,0 +1,161 @@
+package iuh.fit.se.webshop.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.webshop.security.AuthenticatedUser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Routing between a primary and one replica, each a separate in-memory H2 database holding a
+ * marker row with its own name, so every read shows which database answered it.
+ */
+class RoutingDataSourceTest {
+
+    private static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    private static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+    // Nothing listens on port 1, so every connection attempt is refused
+    private static final String UNREACHABLE_URL = "jdbc:h2:tcp://localhost:1/routing-missing";
+
+    private final List<AutoCloseable> closeables = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        SecurityContextHolder.clearContext();
+        for (AutoCloseable closeable : closeables) {
+            closeable.close();
+        }
+        closeables.clear();
+    }
+
+    @Test
+    void readOnlyTransactionsReadFromTheReplica() {
+        Routing routing = routing(REPLICA_URL);
+
+        assertEquals("replica", routing.read());
+        assertEquals("primary", routing.readWrite());
+    }
+
+    @Test
+    void writesGoToThePrimary() {
+        Routing routing = routing(REPLICA_URL);
+
+        routing.tx(false).executeWithoutResult(status ->
+                routing.jdbc.update("INSERT INTO marker (id, name) VALUES (2, 'written')"));
+
+        assertEquals(1, count(PRIMARY_URL, "written"));
+        assertEquals(0, count(REPLICA_URL, "written"));
+    }
+
+    @Test
+    void pinnedUserReadsFromThePrimary() {
+        Routing routing = routing(REPLICA_URL);
+        routing.replicas.pinToPrimary(7L);
+
+        signIn(7L);
+        assertEquals("primary", routing.read());
+        signIn(8L);
+        assertEquals("replica", routing.read());
+    }
+
+    @Test
+    void pinAllSendsEveryReadToThePrimary() {
+        Routing routing = routing(REPLICA_URL);
+        routing.replicas.pinAllToPrimary();
+
+        assertEquals("primary", routing.read());
+        signIn(8L);
+        assertEquals("primary", routing.read());
+    }
+
+    @Test
+    void unreachableReplicaFallsBackToThePrimary() {
+        Routing routing = routing(UNREACHABLE_URL);
+
+        assertEquals("primary", routing.read());
+        assertEquals(1L, routing.replicas.stats().get("primaryFallbacks"));
+    }
+
+    @Test
+    void replicaFailingBetweenHealthChecksFallsBackToThePrimary() {
+        Routing routing = routing(REPLICA_URL);
+        assertEquals("replica", routing.read());
+
+        // The pool refuses connections from now on, as a replica that went away would
+        routing.replicas.close();
+
+        assertEquals("primary", routing.read());
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> pools = (List<Map<String, Object>>) routing.replicas.stats().get("replicas");
+        assertFalse((Boolean) pools.get(0).get("healthy"));
+    }
+
+    private record Routing(ReplicaPool replicas, JdbcTemplate jdbc, DataSourceTransactionManager txManager) {
+
+        TransactionTemplate tx(boolean readOnly) {
+            TransactionTemplate template = new TransactionTemplate(txManager);
+            template.setReadOnly(readOnly);
+            return template;
+        }
+
+        String read() {
+            return tx(true).execute(status -> jdbc.queryForObject("SELECT name FROM marker WHERE id = 1", String.class));
+        }
+
+        String readWrite() {
+            return tx(false).execute(status -> jdbc.queryForObject("SELECT name FROM marker WHERE id = 1", String.class));
+        }
+    }
+
+    private Routing routing(String replicaUrl) {
+        marker(PRIMARY_URL, "primary");
+        marker(REPLICA_URL, "replica");
+        ReplicaPool replicas = new ReplicaPool(replicaUrl, "sa", "", 2, 250, 5,
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+        closeables.add(replicas::close);
+        replicas.checkHealth();
+        RoutingDataSource dataSource = new RoutingDataSource(pool(PRIMARY_URL), replicas);
+        closeables.add(dataSource);
+        return new Routing(replicas, new JdbcTemplate(dataSource), new DataSourceTransactionManager(dataSource));
+    }
+
+    private void marker(String url, String name) {
+        JdbcTemplate jdbc = new JdbcTemplate(pool(url));
+        jdbc.execute("CREATE TABLE IF NOT EXISTS marker (id INT PRIMARY KEY, name VARCHAR(20))");
+        jdbc.update("DELETE FROM marker");
+        jdbc.update("INSERT INTO marker (id, name) VALUES (1, ?)", name);
+    }
+
+    private int count(String url, String name) {
+        Integer count = new JdbcTemplate(pool(url)).queryForObject("SELECT COUNT(*) FROM marker WHERE name = ?", Integer.class, name);
+        return count == null ? 0 : count;
+    }
+
+    private HikariDataSource pool(String url) {
+        HikariDataSource ds = new HikariDataSource();
+        ds.setJdbcUrl(url);
+        ds.setUsername("sa");
+        ds.setPassword("");
+        ds.setMaximumPoolSize(2);
+        closeables.add(ds);
+        return ds;
+    }
+
+    private static void signIn(Long userId) {
+        AuthenticatedUser user = new AuthenticatedUser(userId, "user" + userId, "USER");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+    }
+}
@@ -0,0 +1,90 @@
+package iuh.fit.se.webshop.controllers;
+
+import iuh.fit.se.webshop.models.Product;
+import iuh.fit.se.webshop.models.User;
+import iuh.fit.se.webshop.repositories.ProductRepository;
+import iuh.fit.se.webshop.repositories.UserRepository;
+import iuh.fit.se.webshop.security.AuthenticatedUser;
+import iuh.fit.se.webshop.services.CartStore;
+import iuh.fit.se.webshop.services.QueryBudget;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checkout must take the same number of SQL statements whatever the basket size: order
+ * lines are inserted in one JDBC batch and the cart is removed with one bulk DELETE.
+ * Statements are counted by QueryBudget, the session factory's StatementInspector.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CheckoutStatementCountTest {
+
+    private static final int MANY_LINES = 20;
+
+    @Autowired
+    private OrderController orderController;
+    @Autowired
+    private CartStore cartStore;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private QueryBudget queryBudget;
+
+    @Test
+    void statementCountDoesNotGrowWithCartLines() {
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < MANY_LINES; i++) {
+            products.add(productRepository.save(product("Product " + i)));
+        }
+
+        // The first checkout also fetches the first id blocks of the order sequences
+        checkout(user("warmup"), products.subList(0, 1));
+        int oneLine = checkout(user("one-line"), products.subList(0, 1));
+        int manyLines = checkout(user("many-lines"), products);
+
+        assertEquals(oneLine, manyLines, "statements for 1 cart line vs " + MANY_LINES);
+    }
+
+    private int checkout(User user, List<Product> products) {
+        for (Product product : products) {
+            cartStore.add(user.getId(), product, 1);
+        }
+        OrderController.CreateOrderRequest request = new OrderController.CreateOrderRequest();
+        request.shippingAddress = "1 Test Street";
+
+        queryBudget.begin();
+        ResponseEntity<?> response = orderController.checkout(
+                new AuthenticatedUser(user.getId(), user.getUsername(), "USER"), null, request);
+        int statements = queryBudget.end("POST", "/api/orders");
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(0, cartStore.getItems(user.getId()).size());
+        return statements;
+    }
+
+    private User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("not-a-hash");
+        user.setEmail(username + "@example.com");
+        user.setRole("USER");
+        return userRepository.save(user);
+    }
+
+    private static Product product(String name) {
+        Product product = new Product();
+        product.setName(name);
+        product.setPrice(10.0);
+        return product;
+    }
+}
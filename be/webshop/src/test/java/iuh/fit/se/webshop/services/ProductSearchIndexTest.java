@@ -0,0 +1,52 @@
+package iuh.fit.se.webshop.services;
+
+import iuh.fit.se.webshop.models.Product;
+import iuh.fit.se.webshop.repositories.ProductRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * A rebuild reads the catalog without holding the index lock; writes that land while it
+ * reads must survive the swap to the rebuilt index.
+ */
+class ProductSearchIndexTest {
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final ProductSearchIndex index = new ProductSearchIndex(productRepository);
+
+    @Test
+    void writesDuringRebuildAreKept() {
+        Product lamp = product(1L, "Desk lamp");
+        Product chair = product(2L, "Office chair");
+        Product renamed = product(1L, "Floor lamp");
+        Product kettle = product(3L, "Electric kettle");
+        // findAll returns what was committed when it started; the writes come in while it runs
+        doAnswer(invocation -> {
+            index.index(kettle);
+            index.index(renamed);
+            index.remove(2L);
+            return List.of(lamp, chair);
+        }).when(productRepository).findAll();
+
+        index.rebuild();
+
+        assertEquals(List.of(kettle), index.search("kettle", 10));
+        assertEquals(List.of(renamed), index.search("floor", 10));
+        assertEquals(List.of(), index.search("desk", 10));
+        assertEquals(List.of(), index.search("chair", 10));
+        assertEquals(2, index.size());
+    }
+
+    private static Product product(Long id, String name) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setPrice(10.0);
+        return product;
+    }
+}
@@ -16,10 +16,10 @@ export const api = {
     if (!res.ok) throw new Error(await res.text());
     return res.json();
   },
-  post: async (url: string, body: any) => {
+  post: async (url: string, body: any, extraHeaders: Record<string, string> = {}) => {
     const res = await fetch(`/api${url}`, {
       method: 'POST',
-      headers: headers(),
+      headers: { ...headers(), ...extraHeaders },
       body: JSON.stringify(body),
     });
     if (!res.ok) throw new Error(await res.text());
@@ -36,6 +36,18 @@ export const api = {
     const text = await res.text();
     return text ? JSON.parse(text) : {};
   },
+  // Multipart body; the browser sets Content-Type with the boundary itself
+  upload: async (url: string, form: FormData, method: 'POST' | 'PUT' = 'POST') => {
+    const token = getToken();
+    const res = await fetch(`/api${url}`, {
+      method,
+      headers: token ? { Authorization: `Bearer ${token}` } : {},
+      body: form,
+    });
+    if (!res.ok) throw new Error(await res.text());
+    const text = await res.text();
+    return text ? JSON.parse(text) : {};
+  },
   delete: async (url: string) => {
     const res = await fetch(`/api${url}`, {
       method: 'DELETE',
@@ -45,4 +57,10 @@ export const api = {
     const text = await res.text();
     return text ? JSON.parse(text) : {}; // Backend might return empty body or object
   }
+  // Server-Sent Events; EventSource cannot send headers, so the token goes in the query
+  stream: (url: string) => {
+    const token = getToken();
+    const sep = url.includes('?') ? '&' : '?';
+    return new EventSource(`/api${url}${token ? `${sep}access_token=${encodeURIComponent(token)}` : ''}`);
+  }
 };
@@ -9,6 +9,12 @@ export function formatPrice(v: number) {
   return new Intl.NumberFormat('vi-VN', { style: 'currency', currency: 'VND' }).format(v);
 }
 
+// Images uploaded to the backend have smaller variants next to the stored "detail" URL
+export function imageVariant(url: string | undefined, variant: 'thumb' | 'card' | 'detail') {
+  if (!url || !url.startsWith('/api/images/')) return url;
+  return url.replace(/\/(thumb|card|detail)$/, `/${variant}`);
+}
+
 export function ProductCard({ product }: { product: Product }) {
   const navigate = useNavigate();
   const { isAuthenticated } = useAuth();
@@ -48,7 +54,7 @@ export function ProductCard({ product }: { product: Product }) {
       <div className="bg-transparent">
         <div className="relative w-full p-2 bg-slate-950 pb-[100%]">
           <img 
-            src={product.image || 'https://via.placeholder.com/600x600.png?text=Product'} 
+            src={imageVariant(product.image, 'card') || 'https://via.placeholder.com/600x600.png?text=Product'} 
             alt={product.name}
             className="absolute inset-0 h-full w-full object-contain transition duration-300 group-hover:scale-105"
             loading="lazy"
@@ -2,7 +2,7 @@ import React, { useEffect, useState } from 'react';
 import { api } from '../api';
 import { Product, Category, User, Order } from '../types';
 import { Trash2, Edit, Plus, X, Package, Users, TrendingUp } from 'lucide-react';
-import { formatPrice } from '../components/ProductCard';
+import { formatPrice, imageVariant } from '../components/ProductCard';
 
 type Tab = 'products' | 'categories' | 'users' | 'stats';
 
@@ -61,6 +61,7 @@ function ProductManager() {
   const [name, setName] = useState('');
   const [price, setPrice] = useState('');
   const [image, setImage] = useState('');
+  const [imageFile, setImageFile] = useState<File | null>(null);
   const [description, setDescription] = useState('');
   const [categoryId, setCategoryId] = useState('');
 
@@ -92,7 +93,17 @@ function ProductManager() {
     };
 
     try {
-      if (editing) {
+      if (imageFile) {
+        // The backend stores the file and fills in the image URL
+        const form = new FormData();
+        form.append('product', new Blob([JSON.stringify(payload)], { type: 'application/json' }));
+        form.append('image', imageFile);
+        if (editing) {
+          await api.upload(`/products/${editing.id}`, form, 'PUT');
+        } else {
+          await api.upload('/products', form);
+        }
+      } else if (editing) {
         await api.put(`/products/${editing.id}`, payload);
       } else {
         await api.post('/products', payload);
@@ -120,6 +131,7 @@ function ProductManager() {
       setName(product.name);
       setPrice(String(product.price));
       setImage(product.image);
+      setImageFile(null);
       setDescription(product.description);
       setCategoryId(String(product.category?.id || ''));
     } else {
@@ -127,6 +139,7 @@ function ProductManager() {
       setName('');
       setPrice('');
       setImage('');
+      setImageFile(null);
       setDescription('');
       setCategoryId(categories[0]?.id.toString() || '');
     }
@@ -166,7 +179,7 @@ function ProductManager() {
               <tr key={p.id} className="hover:bg-slate-800/50">
                 <td className="px-6 py-4">{p.id}</td>
                 <td className="px-6 py-4">
-                  <img src={p.image || 'https://via.placeholder.com/50'} className="w-10 h-10 rounded object-cover" />
+                  <img src={imageVariant(p.image, 'thumb') || 'https://via.placeholder.com/50'} className="w-10 h-10 rounded object-cover" />
                 </td>
                 <td className="px-6 py-4 font-medium text-white">{p.name}</td>
                 <td className="px-6 py-4 text-brand">{formatPrice(p.price)}</td>
@@ -213,6 +226,12 @@ function ProductManager() {
               <div>
                 <label className="block text-sm font-medium text-slate-300 mb-1">Link ảnh</label>
                 <input className="input" value={image} onChange={e => setImage(e.target.value)} />
+                <input
+                  type="file"
+                  accept="image/*"
+                  className="mt-2 text-sm text-slate-400"
+                  onChange={e => setImageFile(e.target.files?.[0] || null)}
+                />
               </div>
               <div>
                 <label className="block text-sm font-medium text-slate-300 mb-1">Mô tả</label>
@@ -503,8 +522,11 @@ function UserManager() {
   );
 }
 
+type SalesStats = { totalRevenue: number; totalOrders: number; pendingOrders: number };
+
 function StatsDashboard() {
   const [orders, setOrders] = useState<Order[]>([]);
+  const [stats, setStats] = useState<SalesStats>({ totalRevenue: 0, totalOrders: 0, pendingOrders: 0 });
   const [loading, setLoading] = useState(true);
   const [startDate, setStartDate] = useState('');
   const [endDate, setEndDate] = useState('');
@@ -517,10 +539,13 @@ function StatsDashboard() {
       const params = new URLSearchParams();
       if (start) params.append('startDate', start);
       if (end) params.append('endDate', end);
-      if (params.toString()) url += '?' + params.toString();
+      const query = params.toString() ? '?' + params.toString() : '';
+      url += query;
       
-      const data = await api.get(url);
+      // Summary cards come from the server-side daily rollups
+      const [data, summary] = await Promise.all([api.get(url), api.get('/stats' + query)]);
       setOrders(data);
+      setStats(summary);
     } catch (e) { 
       console.error(e); 
     } finally { 
@@ -532,6 +557,23 @@ function StatsDashboard() {
     loadOrders();
   }, []);
 
+  // New orders and status changes arrive over the admin order stream
+  useEffect(() => {
+    const source = api.stream('/orders/stream');
+    source.addEventListener('order:created', (e) => {
+      const order: Order = JSON.parse((e as MessageEvent).data);
+      // A new order is dated now, so it only belongs in a range that reaches today
+      const today = new Date().toISOString().split('T')[0];
+      if (endDate && endDate < today) return;
+      setOrders(prev => prev.some(o => o.id === order.id) ? prev : [order, ...prev]);
+    });
+    source.addEventListener('order:status', (e) => {
+      const change: { id: number; status: string } = JSON.parse((e as MessageEvent).data);
+      setOrders(prev => prev.map(o => o.id === change.id ? { ...o, status: change.status } : o));
+    });
+    return () => source.close();
+  }, [endDate]);
+
   const handleFilterChange = (type: typeof filterType) => {
     setFilterType(type);
     const now = new Date();
@@ -580,9 +622,7 @@ function StatsDashboard() {
 
   if (loading) return <div className="text-center py-10">Đang tải...</div>;
 
-  const totalRevenue = orders.reduce((sum, o) => sum + (o.status==='Paid'?o.totalAmount:0), 0);
-  const totalOrders = orders.length;
-  const pendingOrders = orders.filter(o => o.status !== 'Paid').length;
+  const { totalRevenue, totalOrders, pendingOrders } = stats;
 
   return (
     <div>
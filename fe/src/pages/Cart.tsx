@@ -1,6 +1,7 @@
-import React, { useEffect, useState } from 'react';
+import React, { useEffect, useRef, useState } from 'react';
 import { api } from '../api';
 import { CartItem } from '../types';
+import { imageVariant } from '../components/ProductCard';
 import { Trash2, CreditCard, Plus, Minus } from 'lucide-react';
 import { useNavigate } from 'react-router-dom';
 
@@ -8,6 +9,8 @@ export function Cart() {
   const [items, setItems] = useState<CartItem[]>([]);
   const [loading, setLoading] = useState(true);
   const [address, setAddress] = useState('');
+  // Reused by retries of the same checkout so the server never creates a duplicate order
+  const idempotencyKey = useRef<string | null>(null);
   const navigate = useNavigate();
 
   useEffect(() => {
@@ -54,7 +57,9 @@ export function Cart() {
     if (items.length === 0) return alert('Giỏ hàng trống');
     
     try {
-      await api.post('/orders', { shippingAddress: address });
+      idempotencyKey.current ??= crypto.randomUUID();
+      await api.post('/orders', { shippingAddress: address }, { 'Idempotency-Key': idempotencyKey.current });
+      idempotencyKey.current = null;
       alert('Đặt hàng thành công! Vui lòng kiểm tra mục Đơn hàng.');
       setItems([]);
       navigate('/orders');
@@ -79,7 +84,7 @@ export function Cart() {
             items.map((item) => (
               <div key={item.id} className="bg-slate-800 p-4 rounded-lg border border-slate-700">
                 <div className="flex items-center gap-4 mb-3">
-                  <img src={item.product.image || 'https://via.placeholder.com/100'} className="w-16 h-16 object-cover rounded" />
+                  <img src={imageVariant(item.product.image, 'thumb') || 'https://via.placeholder.com/100'} className="w-16 h-16 object-cover rounded" />
                   <div className="flex-1">
                     <h3 className="text-white font-medium">{item.product.name}</h3>
                     <p className="text-blue-400 text-sm">
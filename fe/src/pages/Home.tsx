@@ -21,6 +21,8 @@ export function Home() {
   // or just show all items per category for simplicity, or limited items per category.
   // Let's show limited items per category with a "See all" button that filters to that category.
   const [visible, setVisible] = useState<number>(8); // Only used when a specific category is active
+  // Ranked ids from the server-side search index (null when there is no query)
+  const [searchRank, setSearchRank] = useState<Map<number, number> | null>(null);
 
   useEffect(() => {
     const fetchProducts = async () => {
@@ -38,6 +40,22 @@ export function Home() {
     fetchProducts();
   }, []);
 
+  useEffect(() => {
+    if (!query.trim()) {
+      setSearchRank(null);
+      return;
+    }
+    const handle = setTimeout(async () => {
+      try {
+        const hits: Product[] = await api.get(`/products/search?q=${encodeURIComponent(query)}&limit=100`);
+        setSearchRank(new Map(hits.map((p, i) => [p.id, i])));
+      } catch (error) {
+        console.error('Search failed:', error);
+      }
+    }, 150);
+    return () => clearTimeout(handle);
+  }, [query]);
+
   // Extract categories dynamically from products
   const categories = useMemo(() => {
     const set = new Set<string>();
@@ -48,9 +66,10 @@ export function Home() {
   // Helper to filter/sort a list
   const processList = (list: Product[]) => {
     let result = list;
-    if (query.trim()) {
-      const q = query.trim().toLowerCase();
-      result = result.filter(p => p.name.toLowerCase().includes(q));
+    if (query.trim() && searchRank) {
+      result = result
+        .filter(p => searchRank.has(p.id))
+        .sort((a, b) => searchRank.get(a.id)! - searchRank.get(b.id)!);
     }
     if (sort !== 'none') {
       result = [...result].sort((a, b) => sort === 'asc' ? a.price - b.price : b.price - a.price);
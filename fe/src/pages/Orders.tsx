@@ -9,6 +9,23 @@ export function Orders() {
 
   useEffect(() => {
     loadOrders();
+    // Apply new orders and status changes as they happen instead of reloading the list
+    const source = api.stream('/orders/stream');
+    let opened = false;
+    source.addEventListener('open', () => {
+      // After a reconnect, events sent while we were away are gone; reload once
+      if (opened) loadOrders();
+      opened = true;
+    });
+    source.addEventListener('order:created', (e) => {
+      const order: Order = JSON.parse((e as MessageEvent).data);
+      setOrders(prev => prev.some(o => o.id === order.id) ? prev : [order, ...prev]);
+    });
+    source.addEventListener('order:status', (e) => {
+      const change: { id: number; status: string } = JSON.parse((e as MessageEvent).data);
+      setOrders(prev => prev.map(o => o.id === change.id ? { ...o, status: change.status } : o));
+    });
+    return () => source.close();
   }, []);
 
   const loadOrders = async () => {
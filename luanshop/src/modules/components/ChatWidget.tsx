@@ -1,5 +1,4 @@
-import { useEffect, useMemo, useRef, useState } from 'react'
-import { io } from 'socket.io-client'
+import { useEffect, useRef, useState } from 'react'
 
 export function ChatWidget() {
   const [open, setOpen] = useState(false)
@@ -10,7 +9,6 @@ export function ChatWidget() {
   const [threadId, setThreadId] = useState<string | null>(null)
   const [sent, setSent] = useState(false)
   const audioRef = useRef<HTMLAudioElement | null>(null)
-  const socket = useMemo(()=> io('/', { transports:['websocket'] }), [])
 
   useEffect(() => {
     try {
@@ -18,9 +16,6 @@ export function ChatWidget() {
       if (saved) setThreadId(saved)
     } catch {}
   }, [])
-  useEffect(() => {
-    return () => { socket.disconnect() }
-  }, [socket])
 
   const [messages, setMessages] = useState<Array<{ id:string, role:'guest'|'admin', text:string, ts:number, threadId?:string }>>([])
   const boxRef = useRef<HTMLDivElement | null>(null)
@@ -29,15 +24,20 @@ export function ChatWidget() {
     const el = boxRef.current; if (!el) return; setTimeout(()=>{ el.scrollTop = el.scrollHeight }, 0)
   }
 
+  // Admin replies are pushed over Server-Sent Events; only widgets with a thread keep a stream open
   useEffect(() => {
-    socket.on('chat:reply', (msg: any) => {
-      if (msg?.threadId && msg.threadId === threadId) {
-        setMessages((m)=>[...m, msg])
+    if (!threadId) return
+    const source = new EventSource(`/api/chat/stream?threadId=${encodeURIComponent(threadId)}`)
+    source.addEventListener('chat:reply', (e) => {
+      const msg = JSON.parse((e as MessageEvent).data)
+      if (msg?.threadId === threadId) {
+        setMessages((m)=> m.some(x => x.id === msg.id) ? m : [...m, msg])
         if (audioRef.current) { audioRef.current.currentTime = 0; audioRef.current.play().catch(()=>{}) }
         scrollToBottom()
       }
     })
-  }, [socket, threadId])
+    return () => { source.close() }
+  }, [threadId])
 
   useEffect(() => {
     if (!threadId || !open) return
@@ -45,24 +45,40 @@ export function ChatWidget() {
       try {
         const res = await fetch(`/api/chat?threadId=${encodeURIComponent(threadId)}`)
         if (res.ok) { const data = await res.json(); setMessages(data) }
+        // Unknown to the server (an old widget's id, or expired): the next message starts a new thread
+        else if (res.status === 404) forgetThread()
         scrollToBottom()
       } catch {}
     })()
   }, [threadId, open])
 
+  function forgetThread() {
+    setThreadId(null)
+    setMessages([])
+    try { localStorage.removeItem('ltl_chat_thread') } catch {}
+  }
+
+  async function post(tid: string | null) {
+    return fetch('/api/chat', {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json' },
+      body: JSON.stringify({ text, name, contact, threadId: tid })
+    })
+  }
+
   async function send() {
     if (!text.trim()) return
     setSending(true)
     try {
-      const tid = threadId || String(Date.now())
-      await fetch('/api/chat', {
-        method: 'POST',
-        headers: { 'Content-Type': 'application/json' },
-        body: JSON.stringify({ text, name, contact, threadId: tid })
-      })
+      // The server starts a new thread when we have none and returns its id
+      let res = await post(threadId)
+      if (res.status === 404 && threadId) { forgetThread(); res = await post(null) }
+      if (!res.ok) return
+      const data = await res.json()
+      const tid: string = data.threadId
       setThreadId(tid)
       try { localStorage.setItem('ltl_chat_thread', tid) } catch {}
-      setMessages(m=>[...m, { id: String(Date.now()), role: 'guest', text, ts: Date.now(), threadId: tid }])
+      setMessages(m=>[...m, data.message])
       setSent(true)
       setText('')
       scrollToBottom()
@@ -23,7 +23,8 @@ export function useProducts() {
     fetch(url, {
       method: 'GET',
       signal: controller.signal,
-      headers: { 'Cache-Control': 'no-cache' },
+      // Revalidate with the stored ETag; an unchanged catalog comes back as an empty 304
+      cache: 'no-cache',
     })
       .then(async (r) => {
         if (!r.ok) throw new Error('Network')
@@ -1,8 +1,7 @@
-import { useEffect, useMemo, useRef, useState } from 'react'
+import { useEffect, useRef, useState } from 'react'
 import { Header } from '../components/Header'
 import { Footer } from '../components/Footer'
 import { apiFetch, setToken, getToken } from '../admin/auth'
-import { io } from 'socket.io-client'
 
 type Product = { id?: string, name: string, price: number, image: string, category?: string, description?: string }
 
@@ -105,7 +104,6 @@ function ChatPanel(){
   const [msgs, setMsgs] = useState<ChatMsg[]>([])
   const [text, setText] = useState('')
   const audioRef = useRef<HTMLAudioElement | null>(null)
-  const socket = useMemo(()=> io('/', { transports:['websocket'] }), [])
 
   async function loadThreads(){ const data = await apiFetch('/api/admin/chat'); setThreads(data); if (!active && data[0]) setActive(data[0].threadId) }
   async function loadMsgs(id: string){ const data = await apiFetch(`/api/admin/chat?threadId=${encodeURIComponent(id)}`); setMsgs(data) }
@@ -120,12 +118,21 @@ function ChatPanel(){
 
   const activeThread = threads.find(t => t.threadId === active)
 
-  useEffect(()=>{ return () => { socket.disconnect() } }, [socket])
+  // New messages are pushed over Server-Sent Events; EventSource cannot send headers, so the token goes in the query
   useEffect(()=>{
-    socket.on('chat:new', (msg: ChatMsg) => { if (active === msg.threadId) setMsgs(m=>[...m, msg]); loadThreads(); play() })
-    socket.on('chat:reply', (msg: ChatMsg) => { if (active === msg.threadId) setMsgs(m=>[...m, msg]); loadThreads(); })
+    const token = getToken()
+    if (!token) return
+    const source = new EventSource(`/api/admin/chat/stream?access_token=${encodeURIComponent(token)}`)
+    function receive(e: Event){
+      const msg: ChatMsg = JSON.parse((e as MessageEvent).data)
+      if (active === msg.threadId) setMsgs(m=> m.some(x => x.id === msg.id) ? m : [...m, msg])
+      loadThreads()
+    }
+    source.addEventListener('chat:new', (e) => { receive(e); play() })
+    source.addEventListener('chat:reply', receive)
     function play(){ if (!audioRef.current) return; audioRef.current.currentTime = 0; audioRef.current.play().catch(()=>{}) }
-  }, [socket, active])
+    return () => { source.close() }
+  }, [active])
 
   return (
     <div className="grid grid-cols-1 md:grid-cols-3 gap-6">